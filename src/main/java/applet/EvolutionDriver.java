@@ -6,9 +6,9 @@ import java.awt.event.WindowListener;
 import java.nio.FloatBuffer;
 
 import environment.Environment;
-import environment.RandomFoodEnvironment;
+import environment.EnvironmentFactory;
+import environment.SnapshotBuffer;
 import environment.TestEnvironment;
-import environment.TimeVaryingRFE;
 import graphics.opengl.RenderGL;
 
 import javax.swing.JFrame;
@@ -23,8 +23,11 @@ public class EvolutionDriver implements Runnable {
 	public static final int APPLET_WIDTH = 800, APPLET_HEIGHT = 600;
 	public static final int MAX_FPS = 60;
 	public static final long TICK_MS = Config.instance.getLong("TICK");
+	public static final double MAX_TPS = Config.instance.getDouble("SIM_MAX_TPS");
 
 	private Environment env;
+	private SimulationThread simulation;
+	private SnapshotBuffer snapshots;
 	private Canvas canvas;
 	// input stuff
 	/** four booleans indicating "isDown()" state of up, down, left, and right respectively */
@@ -47,37 +50,25 @@ public class EvolutionDriver implements Runnable {
 		canvas = c;
 		
 		initEnvironment();
+		snapshots = new SnapshotBuffer();
+		simulation = new SimulationThread(env, snapshots, MAX_TPS);
 	}
 
 	private void initEnvironment(){
 		String type = Config.instance.getString("ENV_TYPE");
-		if(type.equals("RandomFoodEnvironment")){
-			// initialize everything
-			env = new RandomFoodEnvironment(Config.instance.getDouble("ENV_FOOD"), Config.instance.getLong("SEED"));
-			// INITIAL POPULATION
-			int population = Config.instance.getInt("POPULATION");
-			for(int i=0; i<population; i++)
-				((RandomFoodEnvironment) env).spawnRandomOrganism();
-		} else if (type.equals("TimeVaryingRFE")){
-			// initialize everything
-			env = new TimeVaryingRFE(Config.instance.getDouble("ENV_FOOD"), Config.instance.getLong("SEED"));
-			// INITIAL POPULATION
-			int population = Config.instance.getInt("POPULATION");
-			for(int i=0; i<population; i++)
-				((TimeVaryingRFE) env).spawnRandomOrganism();
-		} else if(type.equals("TestEnvironment")){
-			env = new TestEnvironment(Config.instance.getLong("SEED"), false);
-			((TestEnvironment) env).bindInput(mouse_buttons, mouse_move);
-		} else{
+		env = EnvironmentFactory.newEnvironment(type);
+		if(env == null){
 			System.err.println("'" + type + "' is not a valid environment name. exiting!");
 			System.exit(1);
 		}
+		if(env instanceof TestEnvironment)
+			((TestEnvironment) env).bindInput(mouse_buttons, mouse_move);
 	}
 
 	public void run(){
 		// opengl must be initialized in the same thread where it is used, so we need to create and
 		//	add the RenderGL here.
-		RenderGL renderpanel = new RenderGL(canvas, env, APPLET_WIDTH, APPLET_HEIGHT);
+		RenderGL renderpanel = new RenderGL(canvas, env, snapshots, APPLET_WIDTH, APPLET_HEIGHT);
 		renderpanel.bindInputs(direction_keys, mouse_buttons);
 
 		try {
@@ -88,21 +79,33 @@ public class EvolutionDriver implements Runnable {
 			e.printStackTrace();
 		}
 
-		// run simulation
+		// run simulation on its own thread; this thread only handles input and drawing
+		simulation.setPaused(paused);
+		Thread sim_thread = new Thread(simulation, "simulation");
+		sim_thread.setDaemon(true);
+		sim_thread.start();
+
 		while(!(Display.isCloseRequested() || shutdown_flag)){
 			long now = System.currentTimeMillis();
 			checkInput(renderpanel);
+			simulation.setPaused(paused);
 
 			renderpanel.moveCamera();
 			renderpanel.redraw();
 			updateFPS(now);
-			if(first_frame || !paused || (mouse_buttons[0] == 1 && !mouse_hold)){
+			if(first_frame || (mouse_buttons[0] == 1 && !mouse_hold)){
 				first_frame = false;
 				mouse_hold = true;
-				env.update();
+				simulation.step();
 			}
 			Display.sync(MAX_FPS);
 		}
+		simulation.shutdown();
+		try {
+			sim_thread.join();
+		} catch (InterruptedException e) {
+			e.printStackTrace();
+		}
 		renderpanel.destroy();
 	}
 
@@ -175,6 +178,15 @@ public class EvolutionDriver implements Runnable {
 	}
 
 	public static void main(String[] args){
+		if(args.length > 0 && !Config.load(args[0])){
+			System.err.println("could not load config file '" + args[0] + "'. exiting!");
+			System.exit(1);
+		}
+		// no display needed; just run the simulation
+		if(Config.instance.getBoolean("HEADLESS")){
+			HeadlessDriver.main(args);
+			return;
+		}
 		// create JFrame with a canvas
 		JFrame window = new JFrame("Evolution App");
 		window.setSize(APPLET_WIDTH, APPLET_HEIGHT);
@@ -0,0 +1,139 @@
+package applet;
+
+import java.io.IOException;
+
+import environment.Environment;
+import environment.EnvironmentFactory;
+import graphics.FrameDumper;
+import bio.organisms.AbstractOrganism;
+
+/**
+ * Runs the simulation without a display, ticking the environment as fast as possible until
+ * a tick or wall-clock limit is reached. Stats are printed every HEADLESS_STATS_EVERY ticks, and
+ * if FRAME_DUMP_EVERY is set, a PNG of the world is saved that often (see graphics.FrameDumper).
+ *
+ * Usage: HeadlessDriver [config file]
+ *
+ * @author wrongu
+ *
+ */
+public class HeadlessDriver implements Runnable {
+
+	private Environment env;
+	/** stop after this many ticks (0 for no limit) */
+	private long max_ticks;
+	/** stop after this many milliseconds (0 for no limit) */
+	private long max_millis;
+	/** print stats every this many ticks (0 for no stats until the end) */
+	private long stats_every;
+	/** saves a frame every dump_every ticks (null for none) */
+	private FrameDumper dumper;
+	private long dump_every;
+	private volatile boolean shutdown_flag;
+
+	// variables for tracking throughput
+	private long start_time, stats_time, stats_tick;
+
+	public HeadlessDriver(Environment e, long max_ticks, double max_seconds, long stats_every){
+		this.env = e;
+		this.max_ticks = max_ticks;
+		this.max_millis = (long) (max_seconds * 1000.0);
+		this.stats_every = stats_every;
+		this.shutdown_flag = false;
+	}
+
+	public static HeadlessDriver fromConfig(Environment e){
+		HeadlessDriver driver = new HeadlessDriver(e,
+				Config.instance.getLong("HEADLESS_MAX_TICKS"),
+				Config.instance.getDouble("HEADLESS_MAX_SECONDS"),
+				Config.instance.getLong("HEADLESS_STATS_EVERY"));
+		long dump_every = Config.instance.getLong("FRAME_DUMP_EVERY");
+		if(dump_every > 0)
+			driver.setFrameDumper(FrameDumper.fromConfig(e), dump_every);
+		return driver;
+	}
+
+	/**
+	 * save a frame with 'dumper' every 'every' ticks (or never, if dumper is null)
+	 */
+	public void setFrameDumper(FrameDumper dumper, long every){
+		this.dumper = dumper;
+		this.dump_every = every;
+	}
+
+	public void run(){
+		long ticks = 0;
+		start_time = stats_time = System.currentTimeMillis();
+		stats_tick = env.getTickNumber();
+
+		while(!shutdown_flag){
+			if(max_ticks > 0 && ticks >= max_ticks) break;
+			if(max_millis > 0 && System.currentTimeMillis() - start_time >= max_millis) break;
+
+			env.update();
+			ticks++;
+
+			if(stats_every > 0 && ticks % stats_every == 0)
+				printStats(System.currentTimeMillis());
+
+			if(dumper != null && ticks % dump_every == 0)
+				dumpFrame();
+		}
+
+		long now = System.currentTimeMillis();
+		if(stats_every == 0 || ticks % stats_every != 0)
+			printStats(now);
+		System.out.println("Finished " + ticks + " ticks in " + ((now - start_time) / 1000.0) + " s ("
+				+ String.format("%.1f", 1000.0 * ticks / Math.max(now - start_time, 1L)) + " ticks/s)");
+	}
+
+	/**
+	 * request that run() exits after the current tick
+	 */
+	public void stop(){
+		shutdown_flag = true;
+	}
+
+	private void dumpFrame(){
+		try{
+			dumper.dump(env.getTickNumber());
+		} catch(IOException e){
+			System.err.println("Frame dump failed, no more frames will be saved: " + e.getMessage());
+			dumper = null;
+		}
+	}
+
+	private void printStats(long now){
+		long tick = env.getTickNumber();
+		double tps = 1000.0 * (tick - stats_tick) / Math.max(now - stats_time, 1L);
+		stats_tick = tick;
+		stats_time = now;
+
+		int count = 0;
+		double total_energy = 0.0;
+		for(AbstractOrganism o : env.getAll()){
+			count++;
+			total_energy += o.getEnergy();
+		}
+		double avg_energy = count > 0 ? total_energy / count : 0.0;
+
+		System.out.printf("tick %d\torganisms %d\tavg energy %.4f\t%.1f ticks/s\n", tick, count, avg_energy, tps);
+	}
+
+	public static void main(String[] args){
+		if(args.length > 0 && !Config.load(args[0])){
+			System.err.println("could not load config file '" + args[0] + "'. exiting!");
+			System.exit(1);
+		}
+		// frames (if any) are drawn offscreen; don't let AWT look for a display
+		System.setProperty("java.awt.headless", "true");
+
+		Environment env = EnvironmentFactory.fromConfig();
+		if(env == null){
+			System.err.println("'" + Config.instance.getString("ENV_TYPE") + "' is not a valid environment name. exiting!");
+			System.exit(1);
+		}
+
+		HeadlessDriver.fromConfig(env).run();
+	}
+}
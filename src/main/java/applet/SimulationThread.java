@@ -0,0 +1,80 @@
+package applet;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import environment.Environment;
+import environment.SnapshotBuffer;
+
+/**
+ * Runs Environment.update() on its own thread, publishing a WorldSnapshot after every tick so
+ * that rendering never waits on the simulation (or vice versa).
+ *
+ * @author wrongu
+ *
+ */
+public class SimulationThread implements Runnable {
+
+	/** how long to sleep between checks for work while paused */
+	private static final long PAUSE_SLEEP_MS = 5;
+
+	private Environment env;
+	private SnapshotBuffer snapshots;
+	/** minimum nanoseconds per tick (0 for as fast as possible) */
+	private long min_tick_nanos;
+	private volatile boolean paused, shutdown_flag;
+	/** ticks requested with step() that haven't run yet */
+	private AtomicInteger pending_steps;
+
+	public SimulationThread(Environment e, SnapshotBuffer s, double max_tps){
+		env = e;
+		snapshots = s;
+		min_tick_nanos = max_tps > 0 ? (long) (1e9 / max_tps) : 0L;
+		paused = false;
+		shutdown_flag = false;
+		pending_steps = new AtomicInteger(0);
+	}
+
+	public void run(){
+		// make sure the renderer has something to draw before the first tick
+		snapshots.publish(env);
+		while(!shutdown_flag){
+			if(paused){
+				if(pending_steps.get() == 0){
+					try {
+						Thread.sleep(PAUSE_SLEEP_MS);
+					} catch (InterruptedException e) {
+						return;
+					}
+					continue;
+				}
+				pending_steps.decrementAndGet();
+			}
+			long start = System.nanoTime();
+			env.update();
+			snapshots.publish(env);
+			if(min_tick_nanos > 0){
+				long remaining = min_tick_nanos - (System.nanoTime() - start);
+				if(remaining > 0) LockSupport.parkNanos(remaining);
+			}
+		}
+	}
+
+	public void setPaused(boolean p){
+		paused = p;
+	}
+
+	/**
+	 * run a single tick while paused (does nothing if not paused)
+	 */
+	public void step(){
+		if(paused) pending_steps.incrementAndGet();
+	}
+
+	/**
+	 * request that run() exits after the current tick
+	 */
+	public void shutdown(){
+		shutdown_flag = true;
+	}
+}
@@ -1,8 +1,7 @@
 package bio.organisms;
 
 import java.awt.Graphics2D;
-import java.util.HashMap;
-import java.util.Map.Entry;
+import java.util.Random;
 
 import applet.Config;
 import bio.genetics.Gene;
@@ -15,15 +14,18 @@ public abstract class AbstractOrganism extends Entity implements IGeneCarrier<Ab
 	
 	private static final double FEEDING_CONSTANT = Config.instance.getDouble("FEEDING_CURVATURE");
 	private static final double ENERGY_CAP = Config.instance.getDouble("ENERGY_CAP");
+	private static final int THINKING = EnergyDrains.register("Thinking");
 	
 	protected Gene<? extends AbstractOrganism> gene;
 	protected IBrain brain;
 	protected double energy;
 	protected Environment env;
 	protected int age;
+	/** this organism's own random stream, so that its choices don't depend on update order */
+	protected Random rand;
 	
-	// debug/tune
-	private HashMap<String, Double> energy_drains;
+	// debug/tune: energy used, indexed by EnergyDrains id (null unless ENERGY_TALLY is "organism")
+	private double[] energy_drains;
 	
 	public AbstractOrganism(Environment e,
 			Gene<? extends AbstractOrganism> gene,
@@ -31,8 +33,10 @@ public abstract class AbstractOrganism extends Entity implements IGeneCarrier<Ab
 		this.energy = init_energy;
 		this.gene = gene;
 		this.env = e;
+		this.rand = new Random(e.getRandom().nextLong());
 		this.brain = BrainFactory.newBrain(Config.instance.getString("BRAIN_TYPE"), e.sense_systems.size(), e.action_systems.size(), this, e.getRandom());
-		energy_drains = new HashMap<String, Double>();
+		if(EnergyDrains.TALLY == EnergyDrains.TALLY_ORGANISM)
+			energy_drains = new double[EnergyDrains.count()];
 		this.x = x;
 		this.y = y;
 		this.age = 0;
@@ -40,11 +44,13 @@ public abstract class AbstractOrganism extends Entity implements IGeneCarrier<Ab
 	
 	public void feed(double food_energy){
 		assert(food_energy >= 0.0);
-		double curveDeriv = 1/(FEEDING_CONSTANT*this.energy/2 + 1);
-		this.energy += curveDeriv*food_energy;
-		if(ENERGY_CAP > 0 && this.energy > ENERGY_CAP) {
-			this.energy = ENERGY_CAP;
+		double energy = getEnergy();
+		double curveDeriv = 1/(FEEDING_CONSTANT*energy/2 + 1);
+		energy += curveDeriv*food_energy;
+		if(ENERGY_CAP > 0 && energy > ENERGY_CAP) {
+			energy = ENERGY_CAP;
 		}
+		setEnergy(energy);
 	}
 	
 	public final void tick(){
@@ -55,9 +61,9 @@ public abstract class AbstractOrganism extends Entity implements IGeneCarrier<Ab
 			// still owns its own brain. senses and actions are handled globally
 			// outside this function.
 			double brainEnergy = this.brain.tick();
-			useEnergy(brainEnergy, "Thinking");
+			useEnergy(brainEnergy, THINKING);
 		}
-		age++;
+		setAgeTicks(getAgeTicks() + 1);
 	}
 	
 	/**
@@ -76,6 +82,14 @@ public abstract class AbstractOrganism extends Entity implements IGeneCarrier<Ab
 	 * @param other the other Organism to check against.
 	 */
 	public abstract void collide(AbstractOrganism other);
+	
+	/**
+	 * how close (center to center, summed with the other's radius) another organism must be
+	 * before collide() is called on the pair. 0 means this organism never collides.
+	 */
+	public double getCollisionRadius(){
+		return 0.0;
+	}
 
 	/**
 	 * Draw a graphical representation of this organism to a Graphics2D canvas
@@ -89,40 +103,43 @@ public abstract class AbstractOrganism extends Entity implements IGeneCarrier<Ab
 	
 	// TESTING
 	public void print_energy_stats(){
-		double tot = 0.0;
-		for(Double energy : energy_drains.values())
-			tot += energy;
-		System.out.println("Total Energy Used: " + tot);
-		if(tot > 0.0){
-			for(Entry<String, Double> pair : energy_drains.entrySet())
-				System.out.printf("%20s: %f%%\n", pair.getKey(), (100. * pair.getValue() / tot));
-		}
+		if(energy_drains != null)
+			EnergyDrains.print(energy_drains);
 	}
 	
 	/**
 	 * Expend energy
 	 * @param requested the amount of energy you would like to use
-	 * @param requester a unique name for the requester (used to tally totals)
+	 * @param drain what the energy is used for (an id from EnergyDrains.register(), used to tally totals)
 	 * @return how much energy you can use
 	 */
-	public double useEnergy(double requested, String requester){
+	public double useEnergy(double requested, int drain){
 		assert(requested >= 0);
 		// can't use more energy than I have left
-		double available = Math.min(requested, this.energy);
+		double energy = getEnergy();
+		double available = Math.min(requested, energy);
 		// take away energy
 		// (deliberately allowing for overdraft since that's the only way is_alive() can fail)
-		this.energy -= requested;
-		// tally total
-		if(this.energy_drains.containsKey(requester))
-			energy_drains.put(requester, energy_drains.get(requester) + requested);
-		else
-			energy_drains.put(requester, requested);
+		setEnergy(energy - requested);
+		tally(requested, drain);
 		// return how much can be used
 		return available;
 	}
+
+	/**
+	 * add energy used to the totals (per organism or global, depending on EnergyDrains.TALLY)
+	 */
+	void tally(double requested, int drain){
+		if(energy_drains != null){
+			// drains registered after this organism was made
+			if(drain >= energy_drains.length) energy_drains = EnergyDrains.grow(energy_drains);
+			energy_drains[drain] += requested;
+		} else if(EnergyDrains.TALLY == EnergyDrains.TALLY_GLOBAL)
+			EnergyDrains.addGlobal(drain, requested);
+	}
 	
 	public boolean is_alive(){
-		return this.energy > 0.0;
+		return getEnergy() > 0.0;
 	}
 	
 	public abstract void onDeath();
@@ -131,15 +148,45 @@ public abstract class AbstractOrganism extends Entity implements IGeneCarrier<Ab
 		return this.energy;
 	}
 	
+	protected void setEnergy(double energy) {
+		this.energy = energy;
+	}
+	
+	public IBrain getBrain(){
+		return brain;
+	}
+	
 	public double getBrainOutput(int output_id){
 		return this.brain.getOutput(output_id);
 	}
 	
+	/**
+	 * read brain outputs 0 to count-1 at once
+	 */
+	public void getBrainOutputs(double[] values, int count){
+		this.brain.getOutputs(values, count);
+	}
+	
 	public void setBrainInput(int sense_id, double value){
 		this.brain.setInput(sense_id, value);
 	}
 	
+	/**
+	 * set brain inputs 0 to count-1 at once
+	 */
+	public void setBrainInputs(double[] values, int count){
+		this.brain.setInputs(values, count);
+	}
+	
 	public int getAgeTicks() {
 		return age;
 	}
+	
+	protected void setAgeTicks(int age) {
+		this.age = age;
+	}
+	
+	public Random getRandom() {
+		return rand;
+	}
 }
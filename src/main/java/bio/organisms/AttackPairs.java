@@ -0,0 +1,79 @@
+package bio.organisms;
+
+/**
+ * One tick's attacks, as a flat list of (predator, damage) pairs. The pairs hitting each prey are
+ * chained together in the order they were added (the prey keeps the first and last index), so a
+ * prey that dies can share out its remains without a map of attackers, and its total damage is
+ * summed as the pairs are added.
+ *
+ * Must be filled on one thread; clear() starts the next tick's list.
+ *
+ * @author wrongu
+ *
+ */
+public class AttackPairs {
+
+	private static final int INITIAL_CAPACITY = 256;
+	private static final int DAMAGE = EnergyDrains.register("Damage");
+
+	private SimpleCircleOrganism[] predator;
+	private double[] damage;
+	/** index of the next pair with the same prey, or -1 */
+	private int[] next;
+	private int size;
+
+	public AttackPairs() {
+		predator = new SimpleCircleOrganism[INITIAL_CAPACITY];
+		damage = new double[INITIAL_CAPACITY];
+		next = new int[INITIAL_CAPACITY];
+		size = 0;
+	}
+
+	public void clear() {
+		// drop references so dead predators can be collected
+		for(int k = 0; k < size; k++)
+			predator[k] = null;
+		size = 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * record that 'predator' did 'amount' of damage to 'prey' this tick, and take it from prey's
+	 * energy. Prey must have been cleared (SimpleCircleOrganism.clearAttackers()) since the last
+	 * clear() here.
+	 */
+	public void add(SimpleCircleOrganism predator, SimpleCircleOrganism prey, double amount) {
+		if(size == next.length) grow();
+		int k = size++;
+		this.predator[k] = predator;
+		damage[k] = amount;
+		next[k] = -1;
+		int last = prey.hit(this, k, amount);
+		if(last >= 0) next[last] = k;
+		prey.useEnergy(amount, DAMAGE);
+	}
+
+	private void grow() {
+		int capacity = 2 * size;
+		SimpleCircleOrganism[] new_predator = new SimpleCircleOrganism[capacity];
+		double[] new_damage = new double[capacity];
+		int[] new_next = new int[capacity];
+		System.arraycopy(predator, 0, new_predator, 0, size);
+		System.arraycopy(damage, 0, new_damage, 0, size);
+		System.arraycopy(next, 0, new_next, 0, size);
+		predator = new_predator;
+		damage = new_damage;
+		next = new_next;
+	}
+
+	/**
+	 * feed each predator in the chain starting at pair 'first' its share (by damage done) of 'energy'
+	 */
+	void share(int first, double total_damage, double energy) {
+		for(int k = first; k >= 0; k = next[k])
+			predator[k].feed(energy*damage[k]/total_damage);
+	}
+}
@@ -0,0 +1,118 @@
+package bio.organisms;
+
+import java.util.ArrayList;
+
+import applet.Config;
+
+/**
+ * The ways organisms spend energy. Each one is registered once (in a static field of the class that
+ * spends it) and gets a small integer id, so useEnergy() can tally by array index instead of hashing
+ * a name on every call.
+ *
+ * ENERGY_TALLY chooses where the tallies go: into each organism ("organism", printed when it dies
+ * if VERBOSE), into counters shared by all organisms ("global") or nowhere ("off").
+ *
+ * @author wrongu
+ *
+ */
+public class EnergyDrains {
+
+	public static final int TALLY_OFF = 0;
+	public static final int TALLY_GLOBAL = 1;
+	public static final int TALLY_ORGANISM = 2;
+
+	public static final int TALLY = parseTally(Config.instance.getString("ENERGY_TALLY"));
+
+	private static final ArrayList<String> names = new ArrayList<String>();
+
+	// global totals, kept per thread since energy is used from the worker threads during a tick
+	private static class Totals {
+		double[] amount = new double[0];
+	}
+	private static final ArrayList<Totals> all_totals = new ArrayList<Totals>();
+	private static final ThreadLocal<Totals> totals = new ThreadLocal<Totals>() {
+		@Override
+		protected Totals initialValue() {
+			Totals t = new Totals();
+			synchronized(all_totals) {
+				all_totals.add(t);
+			}
+			return t;
+		}
+	};
+
+	private static int parseTally(String s) {
+		if(s.equalsIgnoreCase("organism")) return TALLY_ORGANISM;
+		if(s.equalsIgnoreCase("global")) return TALLY_GLOBAL;
+		if(!s.equalsIgnoreCase("off"))
+			System.err.println("ENERGY_TALLY '" + s + "' not recognized. Tallying off.");
+		return TALLY_OFF;
+	}
+
+	/**
+	 * get the id for a drain with the given name (the same name always gets the same id)
+	 */
+	public static synchronized int register(String name) {
+		int id = names.indexOf(name);
+		if(id < 0){
+			id = names.size();
+			names.add(name);
+		}
+		return id;
+	}
+
+	public static synchronized int count() {
+		return names.size();
+	}
+
+	public static synchronized String getName(int id) {
+		return names.get(id);
+	}
+
+	/**
+	 * copy of 'tally' with room for every drain registered so far
+	 */
+	static double[] grow(double[] tally) {
+		double[] arr = new double[count()];
+		System.arraycopy(tally, 0, arr, 0, tally.length);
+		return arr;
+	}
+
+	/**
+	 * add to the global total for a drain
+	 */
+	static void addGlobal(int drain, double amount) {
+		Totals t = totals.get();
+		if(drain >= t.amount.length) t.amount = grow(t.amount);
+		t.amount[drain] += amount;
+	}
+
+	/**
+	 * the global totals so far, indexed by drain id (only counted when ENERGY_TALLY is "global").
+	 * Should not be called while a tick is running.
+	 */
+	public static double[] getGlobalTotals() {
+		double[] sum = new double[count()];
+		synchronized(all_totals) {
+			for(Totals t : all_totals)
+				for(int id = 0; id < t.amount.length; id++)
+					sum[id] += t.amount[id];
+		}
+		return sum;
+	}
+
+	/**
+	 * print a breakdown of a tally (indexed by drain id)
+	 */
+	public static void print(double[] tally) {
+		double tot = 0.0;
+		for(double energy : tally)
+			tot += energy;
+		System.out.println("Total Energy Used: " + tot);
+		if(tot > 0.0){
+			for(int id = 0; id < tally.length; id++)
+				if(tally[id] != 0.0)
+					System.out.printf("%20s: %f%%\n", getName(id), (100. * tally[id] / tot));
+		}
+	}
+}
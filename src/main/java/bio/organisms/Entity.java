@@ -7,6 +7,8 @@ public class Entity {
 	protected double x;
 	protected double y;
 	protected Environment e;
+	/** where the Grid holding this Entity keeps it in its list of residents (-1 if none) */
+	private int gridIndex = -1;
 	
 	public Entity() {
 		x = 0;
@@ -27,5 +29,16 @@ public class Entity {
 	public double getY() {
 		return y;
 	}
+	
+	public int getGridIndex() {
+		return gridIndex;
+	}
+	
+	/**
+	 * (for use by Grid only)
+	 */
+	public void setGridIndex(int index) {
+		gridIndex = index;
+	}
 
 }
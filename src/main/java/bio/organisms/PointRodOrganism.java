@@ -117,6 +117,11 @@ public class PointRodOrganism extends AbstractOrganism {
 		return this.pointmasses.get(0).getPosY();
 	}
 
+	@Override
+	public double getCollisionRadius() {
+		return radius;
+	}
+
 	public void collide(AbstractOrganism other) {
 		if(!(other instanceof PointRodOrganism)) return;
 		PointRodOrganism o = (PointRodOrganism) other;
@@ -0,0 +1,247 @@
+package bio.organisms;
+
+import environment.physics.VeryTinyCarArray;
+
+/**
+ * Structure-of-arrays storage for the state of every SimpleCircleOrganism in an environment.
+ * Position, heading, speed, energy, age, attack output, damage taken and a permanent int id live
+ * in primitive arrays indexed by a slot number. Each organism object keeps only its slot and is a
+ * thin view onto here (for rendering, resolve() passes and anything else that has an object).
+ *
+ * While every organism in the grid is stored here, the environment runs senses, actions and
+ * physics as loops over ranges of slots (SenseSystem.senseRange(), ActionSystem.performRange(),
+ * updatePhysics()) which read and write these arrays directly. Slots are kept dense (removing an
+ * organism moves the last one into its place), and sortBy() reorders them to match the grid so
+ * that neighbors in space are mostly neighbors in memory.
+ *
+ * Adding, removing and sorting must happen on one thread; organisms in different slots may be
+ * read and written from different threads at the same time.
+ *
+ * @author wrongu
+ *
+ */
+public class SCOStore {
+
+	private static final int INITIAL_CAPACITY = 64;
+
+	VeryTinyCarArray bodies;
+	double[] energy, attack, damage;
+	int[] age, id;
+	private SimpleCircleOrganism[] owner;
+	private int size, next_id;
+	// temporary space for sortBy()
+	private int[] order, int_scratch;
+	private double[] scratch;
+	private SimpleCircleOrganism[] owner_scratch;
+	private boolean[] placed;
+
+	public SCOStore() {
+		bodies = new VeryTinyCarArray(SimpleCircleOrganism.DEFAULT_MASS, SimpleCircleOrganism.DEFAULT_RADIUS, INITIAL_CAPACITY);
+		allocate(INITIAL_CAPACITY);
+		size = 0;
+		next_id = 0;
+	}
+
+	private void allocate(int capacity) {
+		double[] new_energy = new double[capacity], new_attack = new double[capacity], new_damage = new double[capacity];
+		int[] new_age = new int[capacity], new_id = new int[capacity];
+		SimpleCircleOrganism[] new_owner = new SimpleCircleOrganism[capacity];
+		if(owner != null){
+			System.arraycopy(energy, 0, new_energy, 0, size);
+			System.arraycopy(attack, 0, new_attack, 0, size);
+			System.arraycopy(damage, 0, new_damage, 0, size);
+			System.arraycopy(age, 0, new_age, 0, size);
+			System.arraycopy(id, 0, new_id, 0, size);
+			System.arraycopy(owner, 0, new_owner, 0, size);
+		}
+		energy = new_energy;
+		attack = new_attack;
+		damage = new_damage;
+		age = new_age;
+		id = new_id;
+		owner = new_owner;
+		order = new int[capacity];
+		int_scratch = new int[capacity];
+		scratch = new double[capacity];
+		owner_scratch = new SimpleCircleOrganism[capacity];
+		placed = new boolean[capacity];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public SimpleCircleOrganism getOrganism(int slot) {
+		return owner[slot];
+	}
+
+	/** a number given to each organism when it is added, which stays with it when slots move */
+	public int getId(int slot) {
+		return id[slot];
+	}
+
+	public double getX(int slot) {
+		return bodies.getPosX(slot);
+	}
+
+	public double getY(int slot) {
+		return bodies.getPosY(slot);
+	}
+
+	public double getDirX(int slot) {
+		return bodies.getDirX(slot);
+	}
+
+	public double getDirY(int slot) {
+		return bodies.getDirY(slot);
+	}
+
+	public double getEnergy(int slot) {
+		return energy[slot];
+	}
+
+	public int getAgeTicks(int slot) {
+		return age[slot];
+	}
+
+	public double getDamageThisTurn(int slot) {
+		return damage[slot];
+	}
+
+	public double getAgingMultiplier(int slot) {
+		return SimpleCircleOrganism.agingMultiplier(age[slot]);
+	}
+
+	/**
+	 * same as AbstractOrganism.useEnergy() for the organism in 'slot'
+	 */
+	public void useEnergy(int slot, double requested, int drain) {
+		assert(requested >= 0);
+		energy[slot] -= requested;
+		owner[slot].tally(requested, drain);
+	}
+
+	public void addForce(int slot, double fx, double fy) {
+		bodies.addForce(slot, fx, fy);
+	}
+
+	public void addTurn(int slot, double dTurn) {
+		bodies.addTurn(slot, dTurn);
+	}
+
+	public void setAttackOutput(int slot, double attackOutput) {
+		attack[slot] = attackOutput;
+	}
+
+	/**
+	 * same as SimpleCircleOrganism.clearAttackers() for the organism in 'slot'
+	 */
+	public void clearAttackers(int slot) {
+		damage[slot] = 0.0;
+		owner[slot].forgetHits();
+	}
+
+	/**
+	 * move the organisms in slots 'from' up to (not including) 'to' one time step, the same as
+	 * calling updatePhysics() on each of them
+	 */
+	public void updatePhysics(int from, int to, double dt) {
+		bodies.update(from, to, dt);
+		for(int slot = from; slot < to; slot++){
+			SimpleCircleOrganism o = owner[slot];
+			o.x = bodies.getPosX(slot);
+			o.y = bodies.getPosY(slot);
+		}
+	}
+
+	/**
+	 * give an organism a slot
+	 * @param random in [0,1), chooses the initial heading
+	 * @return the new slot
+	 */
+	int add(SimpleCircleOrganism o, double x, double y, double random, double init_energy) {
+		if(size == owner.length) allocate(2 * size);
+		int slot = bodies.add(x, y, random);
+		assert(slot == size);
+		energy[slot] = init_energy;
+		attack[slot] = 0.0;
+		damage[slot] = 0.0;
+		age[slot] = 0;
+		id[slot] = next_id++;
+		owner[slot] = o;
+		size++;
+		return slot;
+	}
+
+	/**
+	 * free the slot of an organism that has left the environment. The organism keeps working on
+	 * its own (with a copy of its state) in case anything still refers to it.
+	 */
+	public void remove(AbstractOrganism o) {
+		if(!(o instanceof SimpleCircleOrganism)) return;
+		SimpleCircleOrganism sco = (SimpleCircleOrganism) o;
+		if(sco.getStore() != this) return;
+
+		int slot = sco.getSlot();
+		sco.detach();
+		int last = --size;
+		int moved = bodies.removeSwap(slot);
+		if(moved >= 0){
+			energy[slot] = energy[last];
+			attack[slot] = attack[last];
+			damage[slot] = damage[last];
+			age[slot] = age[last];
+			id[slot] = id[last];
+			owner[slot] = owner[last];
+			owner[slot].setSlot(slot);
+		}
+		owner[last] = null;
+	}
+
+	/**
+	 * Renumber slots so that organisms come in the order they are visited by 'visit_order'. Any
+	 * organisms of this store that it doesn't visit (e.g. ones not yet added to the grid) go last,
+	 * in their current order.
+	 */
+	public void sortBy(Iterable<? extends AbstractOrganism> visit_order) {
+		int k = 0;
+		for(AbstractOrganism o : visit_order){
+			if(o instanceof SimpleCircleOrganism && ((SimpleCircleOrganism) o).getStore() == this){
+				int slot = ((SimpleCircleOrganism) o).getSlot();
+				order[k++] = slot;
+				placed[slot] = true;
+			}
+		}
+		for(int slot = 0; slot < size; slot++){
+			if(!placed[slot]) order[k++] = slot;
+			placed[slot] = false;
+		}
+		assert(k == size);
+
+		bodies.permute(order);
+		permute(energy, order);
+		permute(attack, order);
+		permute(damage, order);
+		permute(age, order);
+		permute(id, order);
+		for(int slot = 0; slot < size; slot++)
+			owner_scratch[slot] = owner[order[slot]];
+		for(int slot = 0; slot < size; slot++){
+			owner[slot] = owner_scratch[slot];
+			owner_scratch[slot] = null;
+			owner[slot].setSlot(slot);
+		}
+	}
+
+	private void permute(double[] arr, int[] order) {
+		for(int slot = 0; slot < size; slot++)
+			scratch[slot] = arr[order[slot]];
+		System.arraycopy(scratch, 0, arr, 0, size);
+	}
+
+	private void permute(int[] arr, int[] order) {
+		for(int slot = 0; slot < size; slot++)
+			int_scratch[slot] = arr[order[slot]];
+		System.arraycopy(int_scratch, 0, arr, 0, size);
+	}
+}
@@ -2,9 +2,7 @@ package bio.organisms;
 
 import java.awt.Color;
 import java.awt.Graphics2D;
-import java.util.HashMap;
 import java.util.LinkedList;
-import java.util.Map.Entry;
 
 import applet.Config;
 import environment.Environment;
@@ -13,46 +11,60 @@ import environment.physics.VeryTinyCar;
 public class SimpleCircleOrganism extends AbstractOrganism {
 
 	public static final double DEFAULT_MASS = Config.instance.getDouble("SCO_MASS");
+	public static final double DEFAULT_RADIUS = Config.instance.getDouble("SCO_RADIUS");
 	public static final double DEFAULT_RANGE = Config.instance.getDouble("SCO_EFFECT_RANGE");
 	public static final double ENERGY_ON_DEATH = Config.instance.getDouble("SCO_ENERGY_ON_DEATH");
 	public static final double AGING_LATENCY = Config.instance.getDouble("AGING_LATENCY");
 	public static final double AGING_SPEED = Config.instance.getDouble("AGING_SPEED");
 
+	private static final int CHILD_SPLIT = EnergyDrains.register("Child Split");
+
 	// Graphics
 	private static final Color DRAW_COLOR = new Color(.8f, .3f, .2f);
 
+	/** physics state when this organism isn't kept in an SCOStore */
 	private VeryTinyCar body;
+	/** where this organism's state lives (null if it is kept in this object) */
+	private SCOStore store;
+	private int slot;
 	/** the "reach" of the organism for attack, mate, touch, etc. */
 	private double range;
-	private double totalDamageThisTurn;
 	private double attackOutput;
-	private HashMap<SimpleCircleOrganism,Double> attackers;
+	/** damage taken this tick (when not kept in the store) */
+	private double damage;
+	/** this tick's attacks on this organism: pairs first_hit to last_hit of 'hits' (null if none) */
+	private AttackPairs hits;
+	private int first_hit, last_hit;
+	/** set by Mitosis when this organism has decided to divide at the end of the action phase */
+	private boolean mitosisPending;
 
 	public SimpleCircleOrganism(Environment e, double init_energy, double x, double y) {
 		super(e, null, init_energy, x, y);
-		body = new VeryTinyCar(DEFAULT_MASS, 0.0, x, y, e.getRandom().nextDouble());
+		store = e.getSCOStore();
+		if(store != null)
+			slot = store.add(this, x, y, e.getRandom().nextDouble(), init_energy);
+		else
+			body = new VeryTinyCar(DEFAULT_MASS, DEFAULT_RADIUS, x, y, e.getRandom().nextDouble());
 		range = DEFAULT_RANGE;
-		attackers = new HashMap<SimpleCircleOrganism,Double>();
 	}
 
 	public AbstractOrganism beget(Environment e, Object o) {
-		SimpleCircleOrganism child = new SimpleCircleOrganism(env, (this.energy - ENERGY_ON_DEATH)/2, x, y);
-		this.useEnergy((this.energy + ENERGY_ON_DEATH)/2, "Child Split");
+		SimpleCircleOrganism child = new SimpleCircleOrganism(env, (getEnergy() - ENERGY_ON_DEATH)/2, x, y);
+		this.useEnergy((getEnergy() + ENERGY_ON_DEATH)/2, CHILD_SPLIT);
 		child.brain = brain.beget(e, child);
-		this.age = 0;
+		setAgeTicks(0);
 		return child;
 	}
 
 	@Override
 	public void draw(Graphics2D g, float sx, float sy, float scx, float scy){
 		g.setColor(DRAW_COLOR);
-		int diam = (int) (2.*range);
-		int x = (int) ((sx + body.getPosX()) * scx);
-		int y = (int) ((sy + body.getPosY()) * scy);
-		g.drawOval(x, y, diam, diam);
+		int rx = (int) (range * scx), ry = (int) (range * scy);
+		int x = (int) ((sx + this.x) * scx);
+		int y = (int) ((sy + this.y) * scy);
+		g.drawOval(x - rx, y - ry, 2*rx, 2*ry);
 		g.setColor(Color.WHITE);
-		double[] vel = body.getVel();
-		int vx = (int) (vel[0] * scx), vy = (int) (vel[1] * scy);
+		int vx = (int) (getVX() * scx), vy = (int) (getVY() * scy);
 		g.drawLine(x, y, x-vx, y-vy);
 	}
 
@@ -63,85 +75,185 @@ public class SimpleCircleOrganism extends AbstractOrganism {
 
 	@Override
 	public void updatePhysics(double dt) {
-		this.body.update(dt);
-		x = body.getPosX();
-		y = body.getPosY();
+		if(store != null){
+			store.bodies.update(slot, dt);
+			x = store.bodies.getPosX(slot);
+			y = store.bodies.getPosY(slot);
+		} else{
+			this.body.update(dt);
+			x = body.getPosX();
+			y = body.getPosY();
+		}
+	}
+
+	@Override
+	public double getCollisionRadius() {
+		return DEFAULT_RADIUS;
 	}
 
+	/**
+	 * stages the collision with another SimpleCircleOrganism; it takes effect in updatePhysics()
+	 */
 	@Override
 	public void collide(AbstractOrganism other) {
 		if(other instanceof SimpleCircleOrganism){
-			this.body.collide(((SimpleCircleOrganism) other).body);
+			SimpleCircleOrganism sco = (SimpleCircleOrganism) other;
+			if(store != null && sco.store == store)
+				store.bodies.collide(slot, sco.slot);
+			else if(body != null && sco.body != null)
+				this.body.collide(sco.body);
 		}
 	}
 
 	public void addExternalForce(double fx, double fy){
-		this.body.addForce(new double[]{fx, fy});
+		if(store != null) store.bodies.addForce(slot, fx, fy);
+		else this.body.addForce(new double[]{fx, fy});
 	}
 
 	public double getVX(){
-		return body.getVelX();
+		return store != null ? store.bodies.getVelX(slot) : body.getVelX();
 	}
 	
 	public double getVY(){
-		return body.getVelY();
+		return store != null ? store.bodies.getVelY(slot) : body.getVelY();
 	}
 	
 	public double getSpeed() {
-		return body.getSpeed();
+		return store != null ? store.bodies.getSpeed(slot) : body.getSpeed();
 	}
 
 	public double getDirX() {
-		return body.getDirX();
+		return store != null ? store.bodies.getDirX(slot) : body.getDirX();
 	}
 
 	public double getDirY() {
-		return body.getDirY();
+		return store != null ? store.bodies.getDirY(slot) : body.getDirY();
 	}
 	
 	public void addTurn(double dTurn) {
-		body.addTurn(dTurn);
+		if(store != null) store.bodies.addTurn(slot, dTurn);
+		else body.addTurn(dTurn);
 	}
 	
 	public void setAttackOutput(double attackOutput) {
-		this.attackOutput = attackOutput;
+		if(store != null) store.attack[slot] = attackOutput;
+		else this.attackOutput = attackOutput;
 	}
 	
 	public double getAttackOutput() {
-		return attackOutput;
+		return store != null ? store.attack[slot] : attackOutput;
+	}
+	
+	@Override
+	public double getEnergy() {
+		return store != null ? store.energy[slot] : energy;
+	}
+	
+	@Override
+	protected void setEnergy(double energy) {
+		if(store != null) store.energy[slot] = energy;
+		else this.energy = energy;
+	}
+	
+	@Override
+	public int getAgeTicks() {
+		return store != null ? store.age[slot] : age;
+	}
+	
+	@Override
+	protected void setAgeTicks(int age) {
+		if(store != null) store.age[slot] = age;
+		else this.age = age;
+	}
+	
+	/**
+	 * @return the SCOStore holding this organism's state, or null if it is held here
+	 */
+	public SCOStore getStore() {
+		return store;
 	}
 	
-	public void addAttacker(SimpleCircleOrganism attacker, double attackDamage) {
-		attackers.put(attacker,attackDamage);
-		this.useEnergy(attackDamage, "Damage");
+	/**
+	 * @return this organism's id in its SCOStore (see SCOStore.getId()), or -1 if it is held here
+	 */
+	public int getId() {
+		return store != null ? store.id[slot] : -1;
+	}
+	
+	int getSlot() {
+		return slot;
+	}
+	
+	void setSlot(int slot) {
+		this.slot = slot;
+	}
+	
+	/**
+	 * copy this organism's state out of its SCOStore before the store gives its slot away
+	 */
+	void detach() {
+		energy = store.energy[slot];
+		attackOutput = store.attack[slot];
+		damage = store.damage[slot];
+		age = store.age[slot];
+		body = store.bodies.toCar(slot);
+		store = null;
+		slot = -1;
+	}
+	
+	/**
+	 * called by AttackPairs.add() for pair 'pair' with this organism as prey
+	 * @return the previous pair hitting this organism this tick, or -1 if this is the first
+	 */
+	int hit(AttackPairs pairs, int pair, double attackDamage) {
+		if(store != null) store.damage[slot] += attackDamage;
+		else damage += attackDamage;
+		int last = hits == pairs ? last_hit : -1;
+		if(last < 0){
+			hits = pairs;
+			first_hit = pair;
+		}
+		last_hit = pair;
+		return last;
 	}
 	
 	public void clearAttackers() {
-		attackers.clear();
+		if(store != null) store.damage[slot] = 0.0;
+		else damage = 0.0;
+		forgetHits();
+	}
+
+	void forgetHits() {
+		hits = null;
+	}
+	
+	public void setMitosisPending(boolean pending) {
+		mitosisPending = pending;
+	}
+	
+	public boolean isMitosisPending() {
+		return mitosisPending;
 	}
 	
 	@Override
 	public void onDeath() {
 		// Distribute food to victorious predators.
-		totalDamageThisTurn = getDamageThisTurn();
-		//totalDamageLastTurn = totalDamageThisTurn;
-		if(totalDamageThisTurn > 0) {
-			for(Entry<SimpleCircleOrganism,Double> entry : attackers.entrySet()) {
-				entry.getKey().feed(ENERGY_ON_DEATH*entry.getValue()/totalDamageThisTurn);
-			}
+		double totalDamageThisTurn = getDamageThisTurn();
+		if(totalDamageThisTurn > 0 && hits != null) {
+			hits.share(first_hit, totalDamageThisTurn, ENERGY_ON_DEATH);
 		}
-		attackers.clear();
+		clearAttackers();
 	}
 	
 	public double getAgingMultiplier() {
+		return agingMultiplier(getAgeTicks());
+	}
+
+	static double agingMultiplier(int age) {
 		return age > AGING_LATENCY ? (AGING_SPEED*(age - AGING_LATENCY) + 1.0) : 1.0;
 	}
 	
 	public double getDamageThisTurn() {
-		double totalDamageThisTurn = 0;
-		for(Double damage : attackers.values()) {
-			totalDamageThisTurn += damage;
-		}
-		return totalDamageThisTurn;
+		return store != null ? store.damage[slot] : damage;
 	}
 }
\ No newline at end of file
@@ -1,5 +1,9 @@
 package bio.organisms.brain;
 
+import java.util.List;
+
+import bio.organisms.AbstractOrganism;
+import bio.organisms.SCOStore;
 import environment.Environment;
 
 public abstract class ActionSystem {
@@ -17,7 +21,97 @@ public abstract class ActionSystem {
 		STRENGTH_PER_BRAIN_OUTPUT = strength;
 	}
 	
-	public abstract void performAll(double dt);
+	public void performAll(double dt){
+		perform(env.getAll(), dt);
+		resolve(dt);
+	}
+	
+	/**
+	 * Act on each of the given organisms.
+	 */
+	public void perform(Iterable<AbstractOrganism> orgs, double dt){
+		for(AbstractOrganism o : orgs)
+			act(o, o.getBrainOutput(output_id), dt);
+	}
+	
+	/**
+	 * Act on one organism, given its brain's output for this action. May be called concurrently for
+	 * different organisms, so implementations may only write to the organism they are given. Anything
+	 * that affects other organisms or the environment must be staged here and applied in resolve().
+	 */
+	public abstract void act(AbstractOrganism o, double output, double dt);
+	
+	/**
+	 * Same as act() for the organism in 'slot' of 'store'. Actions that only touch what the store
+	 * holds should write it there; the default goes through the organism object.
+	 */
+	public void act(SCOStore store, int slot, double output, double dt){
+		act(store.getOrganism(slot), output, dt);
+	}
+	
+	/**
+	 * Apply effects staged by act(). Called once (single-threaded) after act() has been called on
+	 * every organism.
+	 */
+	public void resolve(double dt) {}
 	
 	public int getID() { return output_id; }
-}
\ No newline at end of file
+	
+	/**
+	 * Perform every one of the given actions for each organism in a single pass, reading the
+	 * organism's brain outputs into 'row' (indexed by output id) once and handing each action its
+	 * value. Each organism sees its actions in list order, as it would calling perform() on each
+	 * action in turn; resolve() must still be called on each action afterwards.
+	 * @param row space for at least (largest output id + 1) values. Calls running at the same time
+	 * need their own rows.
+	 */
+	public static void performAll(List<? extends ActionSystem> actions, Iterable<AbstractOrganism> orgs, double[] row, double dt){
+		// the row can only be read whole if the ids are exactly 0..n-1
+		int count = actions.size();
+		boolean contiguous = true;
+		for(int k = 0; k < count; k++)
+			contiguous &= actions.get(k).output_id == k;
+		
+		for(AbstractOrganism o : orgs){
+			if(contiguous)
+				o.getBrainOutputs(row, count);
+			else{
+				for(int k = 0; k < count; k++){
+					int id = actions.get(k).output_id;
+					row[id] = o.getBrainOutput(id);
+				}
+			}
+			for(int k = 0; k < count; k++){
+				ActionSystem action = actions.get(k);
+				action.act(o, row[action.output_id], dt);
+			}
+		}
+	}
+	
+	/**
+	 * performAll() for the organisms in slots 'from' up to (not including) 'to' of 'store', acting
+	 * with act(store, slot, ...)
+	 */
+	public static void performRange(List<? extends ActionSystem> actions, SCOStore store, int from, int to, double[] row, double dt){
+		int count = actions.size();
+		boolean contiguous = true;
+		for(int k = 0; k < count; k++)
+			contiguous &= actions.get(k).output_id == k;
+		
+		for(int slot = from; slot < to; slot++){
+			AbstractOrganism o = store.getOrganism(slot);
+			if(contiguous)
+				o.getBrainOutputs(row, count);
+			else{
+				for(int k = 0; k < count; k++){
+					int id = actions.get(k).output_id;
+					row[id] = o.getBrainOutput(id);
+				}
+			}
+			for(int k = 0; k < count; k++){
+				ActionSystem action = actions.get(k);
+				action.act(store, slot, row[action.output_id], dt);
+			}
+		}
+	}
+}
@@ -10,7 +10,17 @@ public interface IBrain extends IGeneCarrier<IBrain, AbstractOrganism>{
 	
 	public void setInput(int id, double val);
 	
+	/**
+	 * same as setInput(id, values[id]) for each id from 0 to count-1
+	 */
+	public void setInputs(double[] values, int count);
+	
 	public double getOutput(int id);
 	
+	/**
+	 * same as values[id] = getOutput(id) for each id from 0 to count-1
+	 */
+	public void getOutputs(double[] values, int count);
+	
 	public Gene<? extends IBrain> getGene();
 }
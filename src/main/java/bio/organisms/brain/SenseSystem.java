@@ -1,5 +1,9 @@
 package bio.organisms.brain;
 
+import java.util.List;
+
+import bio.organisms.AbstractOrganism;
+import bio.organisms.SCOStore;
 import environment.Environment;
 
 public abstract class SenseSystem {
@@ -12,5 +16,97 @@ public abstract class SenseSystem {
 		sense_id = id;
 	}
 	
-	public abstract void senseAll();
-}
\ No newline at end of file
+	public void senseAll(){
+		sense(env.getAll());
+	}
+	
+	/**
+	 * Set this sense's brain input for each of the given organisms.
+	 */
+	public void sense(Iterable<AbstractOrganism> orgs){
+		for(AbstractOrganism o : orgs){
+			double value = value(o);
+			if(!Double.isNaN(value)) o.setBrainInput(sense_id, value);
+		}
+	}
+	
+	/**
+	 * What this sense reads for one organism, or NaN if the organism doesn't have this sense (its
+	 * input is then left alone). May be called concurrently for different organisms, so
+	 * implementations must not write to anything.
+	 */
+	public abstract double value(AbstractOrganism o);
+	
+	/**
+	 * Same as value() for the organism in 'slot' of 'store'. Senses that only need what the store
+	 * holds should read it from there; the default goes through the organism object.
+	 */
+	public double value(SCOStore store, int slot){
+		return value(store.getOrganism(slot));
+	}
+	
+	public int getID() { return sense_id; }
+	
+	/**
+	 * Compute every one of the given senses for each organism in a single pass, collecting the
+	 * values in 'row' (indexed by sense id) and handing the whole row to the organism's brain at
+	 * once. Gives the same inputs as calling sense() on each sense in turn.
+	 * @param row space for at least (largest sense id + 1) values. Calls running at the same time
+	 * need their own rows.
+	 */
+	public static void senseAll(List<? extends SenseSystem> senses, Iterable<AbstractOrganism> orgs, double[] row){
+		// the row can only be passed whole if the ids are exactly 0..n-1
+		int count = senses.size();
+		boolean contiguous = true;
+		for(int k = 0; k < count; k++)
+			contiguous &= senses.get(k).sense_id == k;
+		
+		for(AbstractOrganism o : orgs){
+			boolean whole = contiguous;
+			for(int k = 0; k < count; k++){
+				SenseSystem sense = senses.get(k);
+				double value = sense.value(o);
+				row[sense.sense_id] = value;
+				whole &= !Double.isNaN(value);
+			}
+			if(whole)
+				o.setBrainInputs(row, count);
+			else{
+				for(int k = 0; k < count; k++){
+					int id = senses.get(k).sense_id;
+					if(!Double.isNaN(row[id])) o.setBrainInput(id, row[id]);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * senseAll() for the organisms in slots 'from' up to (not including) 'to' of 'store', reading
+	 * each sense with value(store, slot)
+	 */
+	public static void senseRange(List<? extends SenseSystem> senses, SCOStore store, int from, int to, double[] row){
+		int count = senses.size();
+		boolean contiguous = true;
+		for(int k = 0; k < count; k++)
+			contiguous &= senses.get(k).sense_id == k;
+		
+		for(int slot = from; slot < to; slot++){
+			boolean whole = contiguous;
+			for(int k = 0; k < count; k++){
+				SenseSystem sense = senses.get(k);
+				double value = sense.value(store, slot);
+				row[sense.sense_id] = value;
+				whole &= !Double.isNaN(value);
+			}
+			AbstractOrganism o = store.getOrganism(slot);
+			if(whole)
+				o.setBrainInputs(row, count);
+			else{
+				for(int k = 0; k < count; k++){
+					int id = senses.get(k).sense_id;
+					if(!Double.isNaN(row[id])) o.setBrainInput(id, row[id]);
+				}
+			}
+		}
+	}
+}
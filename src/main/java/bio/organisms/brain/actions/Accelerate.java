@@ -3,10 +3,14 @@ package bio.organisms.brain.actions;
 import environment.Environment;
 import applet.Config;
 import bio.organisms.AbstractOrganism;
+import bio.organisms.EnergyDrains;
+import bio.organisms.SCOStore;
 import bio.organisms.SimpleCircleOrganism;
 import bio.organisms.brain.ActionSystem;
 
 public class Accelerate extends ActionSystem {
+	
+	private static final int ENERGY = EnergyDrains.register("Accelerate");
 
 	public Accelerate(Environment e, int id) {
 		super(	e,
@@ -16,18 +20,23 @@ public class Accelerate extends ActionSystem {
 	}
 
 	@Override
-	public void performAll(double dt) {
-		for (AbstractOrganism orgo : env.getAll()) {
-			if(orgo instanceof SimpleCircleOrganism){
-				SimpleCircleOrganism sco = (SimpleCircleOrganism) orgo;
-				double neuro = sco.getBrainOutput(output_id);
-				double energy = dt * POWER_PER_BRAIN_OUTPUT * neuro;
-				sco.useEnergy(energy*sco.getAgingMultiplier(), "Accelerate");
-				double strength = dt * STRENGTH_PER_BRAIN_OUTPUT * neuro;
-				double ux = sco.getDirX();
-				double uy = sco.getDirY();
-				sco.addExternalForce(ux * strength, uy * strength);
-			}
+	public void act(AbstractOrganism orgo, double neuro, double dt) {
+		if(orgo instanceof SimpleCircleOrganism){
+			SimpleCircleOrganism sco = (SimpleCircleOrganism) orgo;
+			double energy = dt * POWER_PER_BRAIN_OUTPUT * neuro;
+			sco.useEnergy(energy*sco.getAgingMultiplier(), ENERGY);
+			double strength = dt * STRENGTH_PER_BRAIN_OUTPUT * neuro;
+			double ux = sco.getDirX();
+			double uy = sco.getDirY();
+			sco.addExternalForce(ux * strength, uy * strength);
 		}
 	}
+	
+	@Override
+	public void act(SCOStore store, int slot, double neuro, double dt) {
+		double energy = dt * POWER_PER_BRAIN_OUTPUT * neuro;
+		store.useEnergy(slot, energy*store.getAgingMultiplier(slot), ENERGY);
+		double strength = dt * STRENGTH_PER_BRAIN_OUTPUT * neuro;
+		store.addForce(slot, store.getDirX(slot) * strength, store.getDirY(slot) * strength);
+	}
 }
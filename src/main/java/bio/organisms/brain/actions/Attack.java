@@ -1,49 +1,79 @@
 package bio.organisms.brain.actions;
 
+import utils.grid.Grid;
 import environment.Environment;
 import applet.Config;
 import bio.organisms.AbstractOrganism;
+import bio.organisms.AttackPairs;
+import bio.organisms.EnergyDrains;
+import bio.organisms.SCOStore;
 import bio.organisms.SimpleCircleOrganism;
 import bio.organisms.brain.ActionSystem;
 
 public class Attack extends ActionSystem{
 	
+	private static final int ENERGY = EnergyDrains.register("Attack");
+	
 	private double range = Config.instance.getDouble("SCO_EFFECT_RANGE");
+	
+	// this tick's attacks (kept until the next resolve() so that prey dying in between can feed
+	// their attackers)
+	private final AttackPairs pairs = new AttackPairs();
+	// the attacker currently being resolved, and the damage it does to each neighbor
+	private SimpleCircleOrganism attacker;
+	private double damage;
+	private final Grid.Visitor<AbstractOrganism> addAttacker = new Grid.Visitor<AbstractOrganism>() {
+		public void visit(AbstractOrganism o) {
+			if(o instanceof SimpleCircleOrganism && o != attacker)
+				pairs.add(attacker, (SimpleCircleOrganism) o, damage);
+		}
+	};
 
 	public Attack(Environment e, int id) {
 		super(e, id, Config.instance.getDouble("ACT_POWER_PER_ATTACK"), Config.instance.getDouble("SCO_ATTACK_STRENGTH"));
 	}
 
 	@Override
-	public void performAll(double dt) {
-		
-		// First clear last round's attack data.
-		for(AbstractOrganism org : env.getAll()){
-			if(org instanceof SimpleCircleOrganism) {
-				SimpleCircleOrganism sco = (SimpleCircleOrganism) org;
-				sco.clearAttackers();
-			}
+	public void act(AbstractOrganism org, double brainOutput, double dt) {
+		// Each organism forgets last round's attackers, decides how hard to attack and pays for it.
+		// (nothing reads the attackers between here and resolve(), so clearing them now saves a pass)
+		if(org instanceof SimpleCircleOrganism) {
+			SimpleCircleOrganism sco = (SimpleCircleOrganism) org;
+			sco.clearAttackers();
+			sco.setAttackOutput(brainOutput);
+			double attackPower = POWER_PER_BRAIN_OUTPUT*brainOutput;
+			org.useEnergy(attackPower*dt*sco.getAgingMultiplier(), ENERGY);
 		}
+	}
+	
+	@Override
+	public void act(SCOStore store, int slot, double brainOutput, double dt) {
+		store.clearAttackers(slot);
+		store.setAttackOutput(slot, brainOutput);
+		double attackPower = POWER_PER_BRAIN_OUTPUT*brainOutput;
+		store.useEnergy(slot, attackPower*dt*store.getAgingMultiplier(slot), ENERGY);
+	}
+
+	@Override
+	public void resolve(double dt) {
 		
-		// Now do damage and set this round's attack data.
+		// Do damage and record this round's attacks, in one pass of grid queries. This writes to
+		// other organisms (and queries the grid), so it isn't done in act().
+		pairs.clear();
 		for(AbstractOrganism org : env.getAll()){
 			if(org instanceof SimpleCircleOrganism) {
 				SimpleCircleOrganism sco = (SimpleCircleOrganism) org;
-				double brainOutput = sco.getBrainOutput(output_id);
-				sco.setAttackOutput(brainOutput);
-				double attackPower = POWER_PER_BRAIN_OUTPUT*brainOutput;
-				org.useEnergy(attackPower*dt*sco.getAgingMultiplier(), "Attack");
-				double attackStrength = STRENGTH_PER_BRAIN_OUTPUT*brainOutput;
+				double attackStrength = STRENGTH_PER_BRAIN_OUTPUT*sco.getAttackOutput();
 				
-				// Adds attackers to prey.
-				for(AbstractOrganism o : env.getInDisk(sco.getX(), sco.getY(), range)) {
-					if(o instanceof SimpleCircleOrganism && o != sco) {
-						SimpleCircleOrganism prey = (SimpleCircleOrganism) o;
-						prey.addAttacker(sco, attackStrength*dt);
-					}
-				}
+				// Adds attackers to prey (an attack that does no damage has no effect on anyone,
+				// so it isn't recorded).
+				attacker = sco;
+				damage = attackStrength*dt;
+				if(damage != 0)
+					env.forEachInDisk(sco.getX(), sco.getY(), range, addAttacker);
 			}
 		}
+		attacker = null;
 		
 	}
 
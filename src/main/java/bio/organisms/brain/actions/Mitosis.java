@@ -3,6 +3,7 @@ package bio.organisms.brain.actions;
 import environment.Environment;
 import applet.Config;
 import bio.organisms.AbstractOrganism;
+import bio.organisms.SCOStore;
 import bio.organisms.SimpleCircleOrganism;
 import bio.organisms.brain.ActionSystem;
 
@@ -17,14 +18,38 @@ public class Mitosis extends ActionSystem{
 	}
 
 	@Override
-	public void performAll(double dt) {
+	public void act(AbstractOrganism org, double output, double dt) {
+		if(org instanceof SimpleCircleOrganism) {
+			SimpleCircleOrganism sco = (SimpleCircleOrganism)org;
+			
+			double ageMultiplier = MITOSIS_AGE_CONSTANT*sco.getAgeTicks()*dt;
+			ageMultiplier = ageMultiplier > 1 ? 1 : ageMultiplier;
+			// each organism rolls its own dice so that the outcome doesn't depend on which
+			// thread (or in which order) organisms are visited
+			if(sco.getRandom().nextDouble() < dt*MITOSIS_RATE*ageMultiplier*output && sco.getEnergy() > SimpleCircleOrganism.ENERGY_ON_DEATH) {
+				sco.setMitosisPending(true);
+			}
+		}
+	}
+	
+	@Override
+	public void act(SCOStore store, int slot, double output, double dt) {
+		double ageMultiplier = MITOSIS_AGE_CONSTANT*store.getAgeTicks(slot)*dt;
+		ageMultiplier = ageMultiplier > 1 ? 1 : ageMultiplier;
+		SimpleCircleOrganism sco = store.getOrganism(slot);
+		if(sco.getRandom().nextDouble() < dt*MITOSIS_RATE*ageMultiplier*output && store.getEnergy(slot) > SimpleCircleOrganism.ENERGY_ON_DEATH) {
+			sco.setMitosisPending(true);
+		}
+	}
+
+	@Override
+	public void resolve(double dt) {
+		// births draw from the shared environment RNG, so they happen here in grid order
 		for(AbstractOrganism org : env.getAll()) {
 			if(org instanceof SimpleCircleOrganism) {
 				SimpleCircleOrganism sco = (SimpleCircleOrganism)org;
-				
-				double ageMultiplier = MITOSIS_AGE_CONSTANT*sco.getAgeTicks()*dt;
-				ageMultiplier = ageMultiplier > 1 ? 1 : ageMultiplier;
-				if(env.getRandom().nextDouble() < dt*MITOSIS_RATE*ageMultiplier*sco.getBrainOutput(output_id) && sco.getEnergy() > SimpleCircleOrganism.ENERGY_ON_DEATH) {
+				if(sco.isMitosisPending()) {
+					sco.setMitosisPending(false);
 					/*
 					 * Okay here is where we have options.
 					 * 1. Have the parent give birth to offsping - age is not reset.
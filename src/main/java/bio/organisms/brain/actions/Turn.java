@@ -3,11 +3,15 @@ package bio.organisms.brain.actions;
 import environment.Environment;
 import applet.Config;
 import bio.organisms.AbstractOrganism;
+import bio.organisms.EnergyDrains;
+import bio.organisms.SCOStore;
 import bio.organisms.SimpleCircleOrganism;
 import bio.organisms.brain.ActionSystem;
 
 public class Turn extends ActionSystem {
 	
+	private static final int ENERGY = EnergyDrains.register("Turn");
+	
 	public static enum Direction {LEFT, RIGHT};
 	
 	private int dirMult = 0;
@@ -22,23 +26,28 @@ public class Turn extends ActionSystem {
 	}
 
 	@Override
-	public void performAll(double dt) {
-		for (AbstractOrganism orgo : env.getAll()) {
-			if(orgo instanceof SimpleCircleOrganism){
-				SimpleCircleOrganism sco = (SimpleCircleOrganism) orgo;
-				double neuro = sco.getBrainOutput(output_id);
-				double energy = dt * POWER_PER_BRAIN_OUTPUT * neuro * sco.getAgingMultiplier();
-				sco.useEnergy(energy, "Turn");
-				double strength = dt * STRENGTH_PER_BRAIN_OUTPUT * neuro;
-//				double speed = sco.getSpeed();
-				sco.addTurn(dirMult*strength);
-//				if(speed > 0.0){
-//					// (x,y) => (-y,x) to add a normal force
-//					double uy = - sco.getVX() / speed;
-//					double ux =   sco.getVY() / speed;
-//					sco.addExternalForce(ux * strength, uy * strength);
-//				}
-			}
+	public void act(AbstractOrganism orgo, double neuro, double dt) {
+		if(orgo instanceof SimpleCircleOrganism){
+			SimpleCircleOrganism sco = (SimpleCircleOrganism) orgo;
+			double energy = dt * POWER_PER_BRAIN_OUTPUT * neuro * sco.getAgingMultiplier();
+			sco.useEnergy(energy, ENERGY);
+			double strength = dt * STRENGTH_PER_BRAIN_OUTPUT * neuro;
+//			double speed = sco.getSpeed();
+			sco.addTurn(dirMult*strength);
+//			if(speed > 0.0){
+//				// (x,y) => (-y,x) to add a normal force
+//				double uy = - sco.getVX() / speed;
+//				double ux =   sco.getVY() / speed;
+//				sco.addExternalForce(ux * strength, uy * strength);
+//			}
 		}
 	}
+	
+	@Override
+	public void act(SCOStore store, int slot, double neuro, double dt) {
+		double energy = dt * POWER_PER_BRAIN_OUTPUT * neuro * store.getAgingMultiplier(slot);
+		store.useEnergy(slot, energy, ENERGY);
+		double strength = dt * STRENGTH_PER_BRAIN_OUTPUT * neuro;
+		store.addTurn(slot, dirMult*strength);
+	}
 }
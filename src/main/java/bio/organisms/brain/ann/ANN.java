@@ -1,18 +1,35 @@
 package bio.organisms.brain.ann;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.Map;
 
+/**
+ * A spiking network built from Neurons and NeuronConnections. The objects are only used to
+ * describe the network; the first nextState() after any change compiles it into flat arrays
+ * (connections grouped by the neuron they feed, in compressed sparse row form), and from then on
+ * a tick is a single pass over those arrays.
+ */
 public class ANN {
 	
 	private List<Neuron> neurons;
 	private List<NeuronConnection> connections;
 	
+	// the compiled network (valid when !dirty)
+	private boolean dirty;
+	private int size;
+	/** connections into neuron t are entries row_start[t] to row_start[t+1]-1 */
+	private int[] row_start;
+	/** index of the neuron each connection comes from */
+	private int[] from_index;
+	private float[] weights;
+	private float[] threshold, action_potential;
+	private float[] activation, next_activation, scratch;
+	
 	public ANN(){
 		neurons = new ArrayList<Neuron>();
 		connections = new ArrayList<NeuronConnection>();
+		dirty = true;
 	}
 	
 	public void addNeuron(Neuron n){
@@ -22,6 +39,7 @@ public class ANN {
 	public void addNeuron(Neuron n, int type){
 		n.setType(type);
 		neurons.add(n);
+		dirty = true;
 	}
 	
 	public void addConnection(Neuron a, Neuron b, float weight){
@@ -32,13 +50,80 @@ public class ANN {
 		connections.add(conn);
 		if(!neurons.contains(conn.getFrom())) neurons.add(conn.getFrom());
 		if(!neurons.contains(conn.getTo()))   neurons.add(conn.getTo());
+		dirty = true;
 	}
 	
 	public void nextState(){
+		if(dirty) compile();
+		for(int t = 0; t < size; t++){
+			// sum incoming signals (in the order the connections were added)
+			float next = next_activation[t];
+			for(int k = row_start[t]; k < row_start[t+1]; k++)
+				next += activation[from_index[k]] * weights[k];
+			// flush
+			if(next > threshold[t]){
+				scratch[t] = action_potential[t];
+				next_activation[t] = Neuron.DEPOLARIZATION;
+			} else{
+				scratch[t] = next * Neuron.DECAY;
+				next_activation[t] = 0F;
+			}
+		}
+		float[] temp = activation;
+		activation = scratch;
+		scratch = temp;
+	}
+	
+	/**
+	 * Build the flat arrays from the neuron and connection lists. Neurons that were already part
+	 * of a compiled network keep their state.
+	 */
+	private void compile(){
+		// hand state back to the Neuron objects while indices are rebuilt
+		for(int t = 0; t < size; t++)
+			neurons.get(t).detach(activation[t], next_activation[t]);
+		
+		IdentityHashMap<Neuron, Integer> index = new IdentityHashMap<Neuron, Integer>();
+		List<Neuron> unique = new ArrayList<Neuron>();
+		for(Neuron n : neurons){
+			if(!index.containsKey(n)){
+				index.put(n, unique.size());
+				unique.add(n);
+			}
+		}
+		neurons = unique;
+		size = neurons.size();
+		
+		// count connections into each neuron, then place them (stable, so per-neuron order is kept)
+		row_start = new int[size + 1];
 		for(NeuronConnection nc : connections)
-			nc.activate();
-		for(Neuron n : neurons)
-			n.flush();
+			row_start[index.get(nc.getTo()) + 1]++;
+		for(int t = 0; t < size; t++)
+			row_start[t+1] += row_start[t];
+		int[] fill = new int[size];
+		from_index = new int[connections.size()];
+		weights = new float[connections.size()];
+		for(NeuronConnection nc : connections){
+			int t = index.get(nc.getTo());
+			int k = row_start[t] + fill[t]++;
+			from_index[k] = index.get(nc.getFrom());
+			weights[k] = nc.getWeight();
+		}
+		
+		threshold = new float[size];
+		action_potential = new float[size];
+		activation = new float[size];
+		next_activation = new float[size];
+		scratch = new float[size];
+		for(int t = 0; t < size; t++){
+			Neuron n = neurons.get(t);
+			threshold[t] = n.threshold;
+			action_potential[t] = n.action_potential;
+			activation[t] = n.activation;
+			next_activation[t] = n.next_activation;
+			n.attach(this, t);
+		}
+		dirty = false;
 	}
 	
 	public static class Neuron {
@@ -46,9 +131,9 @@ public class ANN {
 		private static final float DEFAULT_ACTION_POTENTIAL = 10F;
 		private static final float DEPOLARIZATION = -3F;
 		private static final float DECAY = 0.95F;
-
+		
 		public static final int TYPE_INPUT  = 0;
-		public static final int TYPE_HIDDEN = 1;	
+		public static final int TYPE_HIDDEN = 1;
 		public static final int TYPE_OUTPUT = 2;
 		
 		private float threshold;
@@ -57,6 +142,9 @@ public class ANN {
 		private float next_activation;
 		private int type;
 		private ArrayList<NeuronConnection> conn_in, conn_out;
+		// where this neuron's state lives once its network is compiled (else null)
+		private ANN owner;
+		private int index;
 		
 		public Neuron(float thresh, int t, float ap){
 			threshold = thresh;
@@ -84,10 +172,15 @@ public class ANN {
 		}
 		
 		public void addActivation(float amount){
-			next_activation += amount;
+			if(owner != null) owner.next_activation[index] += amount;
+			else next_activation += amount;
 		}
 		
 		public void flush(){
+			if(owner != null){
+				activation = owner.activation[index];
+				next_activation = owner.next_activation[index];
+			}
 			if(next_activation > threshold){
 				activation = action_potential;
 				next_activation = DEPOLARIZATION;
@@ -95,10 +188,14 @@ public class ANN {
 				activation = next_activation * DECAY;
 				next_activation = 0F;
 			}
+			if(owner != null){
+				owner.activation[index] = activation;
+				owner.next_activation[index] = next_activation;
+			}
 		}
 		
 		public float getActivation(){
-			return activation;
+			return owner != null ? owner.activation[index] : activation;
 		}
 		
 		public int getType(){
@@ -108,11 +205,21 @@ public class ANN {
 		public void setType(int t){
 			type = t;
 		}
+		
+		private void attach(ANN ann, int i){
+			owner = ann;
+			index = i;
+		}
+		
+		private void detach(float activation, float next_activation){
+			this.activation = activation;
+			this.next_activation = next_activation;
+			owner = null;
+		}
 	}
 	
 	public static class NeuronConnection {
 		
-		public static Map<Neuron, Neuron> NEURON_MAP;
 		public static final int TYPE_IN  = 0;
 		public static final int TYPE_OUT = 1;
 		
@@ -126,8 +233,6 @@ public class ANN {
 			
 			from.connect(this);
 			to.connect(this);
-
-			NEURON_MAP.put(from, to);
 		}
 		
 		public void activate(){
@@ -142,8 +247,8 @@ public class ANN {
 			return to;
 		}
 		
-		static{
-			NEURON_MAP = new HashMap<Neuron, Neuron>();
+		public float getWeight(){
+			return weight;
 		}
 	}
-}
\ No newline at end of file
+}
@@ -14,6 +14,7 @@ import environment.RandomFoodEnvironment;
 import applet.Config;
 import bio.genetics.Gene;
 import bio.organisms.AbstractOrganism;
+import bio.organisms.EnergyDrains;
 import bio.organisms.SimpleCircleOrganism;
 import bio.organisms.brain.IBrain;
 
@@ -22,6 +23,8 @@ import bio.organisms.brain.IBrain;
  */
 public class DumbBrain implements IBrain {
 	
+	private static final int THINKING = EnergyDrains.register("Dumb Think");
+	
 	// Energy constants
 	public static final double NEURON_ENERGY = Config.instance.getDouble("DUMB_UPKEEP"); // Upkeep per neuron.
 	public static final double FIRING_ENERGY = Config.instance.getDouble("DUMB_FIRE"); // Energy to fire each neuron.
@@ -32,6 +35,7 @@ public class DumbBrain implements IBrain {
 	private DoubleMatrix A; // vector of current _internal_ activations (NOT outputs)
 	private DoubleMatrix I; // vector of sensory inputs AND internal-outputs (staging for tick())
 	private DoubleMatrix O; // vector of action potential outputs (stored after tick() for getOutput())
+	private DoubleMatrix net; // W*I (working space for tick())
 	private double threshold, action_potential, depolarize, decay;
 	
 	// DEBUG
@@ -75,6 +79,7 @@ public class DumbBrain implements IBrain {
 		A = new DoubleMatrix(i+o, 1);
 		I = new DoubleMatrix(i+s, 1);
 		O = new DoubleMatrix(o, 1);
+		net = new DoubleMatrix(i+o, 1);
 		threshold = th;
 		action_potential = ap;
 		depolarize = dp;
@@ -116,6 +121,11 @@ public class DumbBrain implements IBrain {
 		I.put(i+index,value);
 	}
 	
+	public void setInputs(double[] values, int count) {
+		for(int id = 0; id < count; id++)
+			setInput(id, values[id]);
+	}
+	
 	/**
 	 * Read off action information from the brain.
 	 * 
@@ -130,6 +140,11 @@ public class DumbBrain implements IBrain {
 		return O.get(index);
 	}
 
+	public void getOutputs(double[] values, int count) {
+		for(int id = 0; id < count; id++)
+			values[id] = getOutput(id);
+	}
+
 	/**
 	 * Ticks the brain. This is a five-step process.
 	 * 1. Decay all signals
@@ -137,38 +152,32 @@ public class DumbBrain implements IBrain {
 	 * 3. Apply thresholding and depolarization to get next-outputs
 	 * 4. Clear input signals
 	 * 5. Drain requisite energy from the organism
+	 * Everything is done in place, so nothing is allocated.
 	 */
 	public void tick() {
-		// Step 1.
-		A = A.mul(this.decay);
-		I = I.mul(this.decay); // TODO handle this such that senses aren't decayed?
-		O = O.mul(this.decay);
+		// Step 1. (A is decayed below, along with steps 2 and 3)
+		I.muli(this.decay); // TODO handle this such that senses aren't decayed?
+		O.muli(this.decay);
 		// Step 2.
-		A = A.add(W.mmul(I));
+		W.mmuli(I, net);
 		// Step 3.
+		double[] a = A.data;
 		for(int n=0; n < (i+o); n++){
-			// first 'i' neurons are stored in I
-			if(n < i){
-				if(A.get(n) > threshold){
-					I.put(n, action_potential);
-					A.put(n, depolarize);
-				}
-			}
-			// output neurons 'i+1:end' are stored in O
-			else{
-				if(A.get(n) > threshold){
-					O.put(n-i, action_potential);
-					A.put(n, depolarize);
-				}
+			a[n] = a[n] * this.decay + net.data[n];
+			if(a[n] > threshold){
+				// first 'i' neurons are stored in I, output neurons 'i+1:end' are stored in O
+				if(n < i) I.data[n] = action_potential;
+				else O.data[n-i] = action_potential;
+				a[n] = depolarize;
 			}
 		}
 		// step 4. clear inputs
 		for(int n=i; n<i+s; n++){
-			I.put(n, 0.0);
+			I.data[n] = 0.0;
 		}
 		// step 5;
 		double energy = NEURON_ENERGY * i + FIRING_ENERGY * O.norm1();
-		this.meatCase.useEnergy(energy, "Dumb Think");
+		this.meatCase.useEnergy(energy, THINKING);
 	}
 
 	public IBrain beget(Environment e, AbstractOrganism parent) {
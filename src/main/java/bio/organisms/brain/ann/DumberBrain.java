@@ -3,10 +3,10 @@ package bio.organisms.brain.ann;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Random;
 
 import org.jblas.DoubleMatrix;
-import org.jblas.MatrixFunctions;
 import org.jblas.ranges.RangeUtils;
 
 import environment.Environment;
@@ -15,11 +15,14 @@ import environment.RandomFoodEnvironment;
 import applet.Config;
 import bio.genetics.Gene;
 import bio.organisms.AbstractOrganism;
+import bio.organisms.EnergyDrains;
 import bio.organisms.SimpleCircleOrganism;
 import bio.organisms.brain.IBrain;
 
 public class DumberBrain  implements IBrain {
 	
+	private static final int THINKING = EnergyDrains.register("Dumber Think");
+	
 	// Energy constants
 	public static final double NEURON_ENERGY = Config.instance.getDouble("DUMBER_UPKEEP"); // Upkeep per neuron.
 	public static final double FIRING_ENERGY = Config.instance.getDouble("DUMBER_FIRE"); // Energy to fire each neuron.
@@ -32,6 +35,9 @@ public class DumberBrain  implements IBrain {
 	private DoubleMatrix outVector;
 	private DoubleMatrix thresholdVector;
 	private DoubleMatrix restVector;
+	// working space for tick(), allocated once
+	private DoubleMatrix axonVector;
+	private DoubleMatrix netVector;
 
 	//constants for updating, etc
 	private double c; // logistic function f = (1 + exp(-a*c))^-1;
@@ -71,6 +77,8 @@ public class DumberBrain  implements IBrain {
 		// (i.e. already threshold'd)
 		thresholdVector = DoubleMatrix.zeros(i+o, 1);
 		restVector = DoubleMatrix.zeros(i+o);
+		axonVector = DoubleMatrix.zeros(i+s, 1);
+		netVector = DoubleMatrix.zeros(i+o, 1);
 	}
 
 	private void init(){
@@ -84,35 +92,42 @@ public class DumberBrain  implements IBrain {
 		if(neuron < i) restVector.put(neuron, rest);
 	}
 
+	/**
+	 * Works entirely in preallocated storage: the weighted sum goes into netVector, then a single
+	 * loop applies the logistic function and the decay to each neuron.
+	 */
 	public void tick(){
 		if(!initialized) init();
 		
 		// multiplier is a combination of internal outputs and senses
-		DoubleMatrix axonVector = DoubleMatrix.concatVertically(outVector.getRowRange(0, i, 0), inVector);
+		System.arraycopy(outVector.data, 0, axonVector.data, 0, i);
+		System.arraycopy(inVector.data, 0, axonVector.data, i, s);
 		
-		// activation += weights * axons;
-		actVector = actVector.add(weightMatrix.mmul(axonVector));
-	
-		// update outputs as logistic-activation-function of activation
-		// out = 1 / (1 + exp(-c*a)) = (1 + exp(a)^-c)^-1
-		//
-		// note that actVector.sub(thresholdVector) is used in place of "a", above, so that thresholds may vary
-		outVector =
-				MatrixFunctions.pow(
-						MatrixFunctions.pow(
-								MatrixFunctions.expi(actVector.sub(thresholdVector)),
-								-c)
-							.add(1.0),
-							-1.0);
-		// decay activation towards rest values
-		actVector = (actVector.sub(restVector).mul(decay)).add(restVector);
+		// net = weights * axons;
+		weightMatrix.mmuli(axonVector, netVector);
+		
+		double[] act = actVector.data, net = netVector.data, out = outVector.data;
+		double[] threshold = thresholdVector.data, rest = restVector.data;
+		double fired = 0.0;
+		for(int n = 0; n < i+o; n++){
+			// activation += weights * axons;
+			double a = act[n] + net[n];
+			// update outputs as logistic-activation-function of activation
+			// out = 1 / (1 + exp(-c*a))
+			//
+			// note that a - threshold is used in place of "a", above, so that thresholds may vary
+			out[n] = 1.0 / (1.0 + Math.exp(-c * (a - threshold[n])));
+			// decay activation towards rest values
+			act[n] = (a - rest[n]) * decay + rest[n];
+			fired += out[n];
+		}
 		
 		// clear inputs now that they have been used
-		inVector = DoubleMatrix.zeros(s, 1);
+		Arrays.fill(inVector.data, 0.0);
 		
 		// drain energy from host
-		double energy = NEURON_ENERGY * i + FIRING_ENERGY * outVector.sum();
-		meatCase.useEnergy(energy, "Dumber Think");
+		double energy = NEURON_ENERGY * i + FIRING_ENERGY * fired;
+		meatCase.useEnergy(energy, THINKING);
 	}
 
 	public String toString(){
@@ -162,11 +177,21 @@ public class DumberBrain  implements IBrain {
 		inVector.put(id, val);
 	}
 
+	public void setInputs(double[] values, int count) {
+		for(int id = 0; id < count; id++)
+			setInput(id, values[id]);
+	}
+
 	public double getOutput(int id) {
 		assert(0 <= id && id < o);
 		return outVector.get(i+id);
 	}
 
+	public void getOutputs(double[] values, int count) {
+		for(int id = 0; id < count; id++)
+			values[id] = getOutput(id);
+	}
+
 	public Gene<? extends IBrain> getGene() {
 		return gene;
 	}
@@ -14,6 +14,7 @@ import environment.RandomFoodEnvironment;
 import applet.Config;
 import bio.genetics.Gene;
 import bio.organisms.AbstractOrganism;
+import bio.organisms.EnergyDrains;
 import bio.organisms.SimpleCircleOrganism;
 import bio.organisms.brain.IBrain;
 
@@ -25,6 +26,8 @@ import bio.organisms.brain.IBrain;
  */
 public class DumbestBrain implements IBrain {
 	
+	private static final int THINKING = EnergyDrains.register("Dumbest Think");
+	
 	// Energy constants
 	public static final double NEURON_ENERGY = Config.instance.getDouble("DUMBEST_UPKEEP"); // Upkeep per neuron.
 	public static final double FIRING_ENERGY = Config.instance.getDouble("DUMBEST_FIRE"); // Energy to fire each neuron.
@@ -110,6 +113,11 @@ public class DumbestBrain implements IBrain {
 		I.put(i+index,value);
 	}
 	
+	public void setInputs(double[] values, int count) {
+		for(int id = 0; id < count; id++)
+			setInput(id, values[id]);
+	}
+	
 	/**
 	 * Read off action information from the brain.
 	 * 
@@ -124,6 +132,11 @@ public class DumbestBrain implements IBrain {
 		return O.get(index);
 	}
 
+	public void getOutputs(double[] values, int count) {
+		for(int id = 0; id < count; id++)
+			values[id] = getOutput(id);
+	}
+
 
 	/**
 	 * Ticks the brain. This is a four-step process.
@@ -131,26 +144,31 @@ public class DumbestBrain implements IBrain {
 	 * 2. Apply thresholding to get next-outputs
 	 * 3. Clear input signals
 	 * 4. Drain requisite energy from the organism
+	 * Everything is done in place, so nothing is allocated.
 	 */
 	public void tick() {
 		// Step 1.
-		A = W.mmul(I);
+		W.mmuli(I, A);
 		// Step 2.
-		for(int n=0; n < i; n++) {
-			// first 'i' neurons are stored in I
-			I.put(n, thresholdFunction(A.get(n)));
-		}
-		for(int n = i; n < o + i; n++) {
-			// output neurons 'i+1:end' are stored in O
-			O.put(n-i, temperOutput(A.get(n)));
+		double[] a = A.data;
+		double fired = 0.0;
+		for(int n=0; n < i+o; n++) {
+			if(n < i) {
+				// first 'i' neurons are stored in I
+				I.data[n] = thresholdFunction(a[n]);
+			} else {
+				// output neurons 'i+1:end' are stored in O
+				O.data[n-i] = temperOutput(a[n]);
+			}
+			fired += Math.abs(a[n]);
 		}
 		// step 3. clear inputs
 		for(int n=i; n<i+s; n++){
-			I.put(n, 0.0);
+			I.data[n] = 0.0;
 		}
 		// step 4;
-		double energy = NEURON_ENERGY * i + FIRING_ENERGY * A.norm1();
-		this.meatCase.useEnergy(energy, "Dumbest Think");
+		double energy = NEURON_ENERGY * i + FIRING_ENERGY * fired;
+		this.meatCase.useEnergy(energy, THINKING);
 	}
 
 	public IBrain beget(Environment e, AbstractOrganism parent) {
@@ -6,7 +6,6 @@ import java.io.IOException;
 import java.util.Random;
 
 import org.jblas.DoubleMatrix;
-import org.jblas.ranges.RangeUtils;
 
 import utils.Util;
 import environment.Environment;
@@ -21,64 +20,166 @@ public class MatrixBrain implements IBrain {
 	private static final double UPKEEP = Config.instance.getDouble("MATRIX_UPKEEP");
 	private static final double ENERGY_PER_FIRE = Config.instance.getDouble("MATRIX_FIRE");
 	
+	/** whether new brains use float (rather than double) arithmetic; see BRAIN_PRECISION */
+	private static final boolean SINGLE = Config.instance.getString("BRAIN_PRECISION").equals("float");
+	
 	// Things for the running brain
 	private int numOutputs;
 	private int numInputs;
 	private int numNeurons;
-	private DoubleMatrix weights;
-	private DoubleMatrix inputs;
-	private DoubleMatrix outputs;
+	// weights are kept row-major, (numOutputs + numNeurons) x (numInputs + numNeurons). Only the
+	// arrays for this brain's precision are allocated.
+	private boolean single;
+	private double[] weights;
+	private double[] inputs;
+	private double[] outputs;
+	private float[] weights_f;
+	private float[] inputs_f;
+	private float[] outputs_f;
+	private double energy;
+	
+	// where this brain's state lives when it is evaluated in a MatrixBrainBatch (else null)
+	MatrixBrainBatch.Group group;
+	int slot;
 	
 	// The gene from which this brain is constructed.
 	private BrainGene gene;
 	
 	// Generates a brain from a gene.
-	private MatrixBrain(BrainGene gene) {
+	private MatrixBrain(BrainGene gene, boolean single) {
 		this.gene = gene;
+		this.single = single;
 		numOutputs = gene.getNumOutputs();
 		numInputs = gene.getNumInputs();
 		numNeurons = gene.getNumNeurons();
-		weights = gene.getWeights();
-		inputs = new DoubleMatrix(numInputs + numNeurons,1);
-		outputs = new DoubleMatrix(numOutputs + numNeurons,1);
+		DoubleMatrix w = gene.getWeights();
 		
 		// Do a check!
-		if((numOutputs + numNeurons != weights.rows) || (numInputs + numNeurons != weights.columns)) {
+		if((numOutputs + numNeurons != w.rows) || (numInputs + numNeurons != w.columns)) {
 			System.err.println("Weight matrix rows and columns do not match outputs/inputs/neurons.");
 			System.exit(0);
 		}
+		
+		if(single) {
+			weights_f = new float[w.rows * w.columns];
+			for(int r = 0; r < w.rows; r++)
+				for(int c = 0; c < w.columns; c++)
+					weights_f[r * w.columns + c] = (float) w.get(r, c);
+			inputs_f = new float[numInputs + numNeurons];
+			outputs_f = new float[numOutputs + numNeurons];
+		} else {
+			weights = new double[w.rows * w.columns];
+			for(int r = 0; r < w.rows; r++)
+				for(int c = 0; c < w.columns; c++)
+					weights[r * w.columns + c] = w.get(r, c);
+			inputs = new double[numInputs + numNeurons];
+			outputs = new double[numOutputs + numNeurons];
+		}
 	}
 	
 	// Generates a random brain with no neurons.
 	public static MatrixBrain newRandom(int numInputs, int numOutputs) {
 		BrainGene gene = BrainGene.randomGene(numInputs, numOutputs);
-		return new MatrixBrain(gene);
+		return new MatrixBrain(gene, SINGLE);
 	}
 	
 	@Override
 	public IBrain beget(Environment e, AbstractOrganism parent) {
-		return new MatrixBrain((BrainGene)gene.mutate());
+		return new MatrixBrain((BrainGene)gene.mutate(), single);
 	}
 
+	/**
+	 * If this brain is in a MatrixBrainBatch, the batch has already done the work for this tick
+	 * and this only reports the energy used.
+	 */
 	@Override
 	public double tick() {
+		if(group != null)
+			return group.energy[slot];
+		if(single)
+			energy = evaluate(numInputs, numOutputs, numNeurons, weights_f, 0, inputs_f, 0, outputs_f, 0);
+		else
+			energy = evaluate(numInputs, numOutputs, numNeurons, weights, 0, inputs, 0, outputs, 0);
+		return energy;
+	}
+	
+	/**
+	 * Tick one brain whose state is stored at the given offsets of flat arrays. Shared by single
+	 * brains and MatrixBrainBatch so that both give exactly the same results.
+	 * @return the energy used
+	 */
+	static double evaluate(int numInputs, int numOutputs, int numNeurons,
+			double[] w, int wOff, double[] in, int inOff, double[] out, int outOff) {
+		int rows = numOutputs + numNeurons;
+		int cols = numInputs + numNeurons;
 		
 		// Tick.
-		outputs = weights.mmul(inputs);
+		double norm1 = 0;
+		for(int r = 0; r < rows; r++) {
+			double sum = 0;
+			int row = wOff + r * cols;
+			for(int c = 0; c < cols; c++)
+				sum += w[row + c] * in[inOff + c];
+			out[outOff + r] = sum;
+			norm1 += Math.abs(sum);
+		}
 		
 		// Compute energy.
 		double energy = 0;
-		energy += ENERGY_PER_FIRE*outputs.norm1();
+		energy += ENERGY_PER_FIRE*norm1;
 		energy += UPKEEP*numNeurons;
 		
 		// Apply cutoff function to neurons and outputs.
-		for(int i = 0; i < outputs.length; i++) {
-			outputs.put(i,cutoff(outputs.get(i)));
+		for(int i = 0; i < rows; i++) {
+			out[outOff + i] = cutoff(out[outOff + i]);
 		}
 		
 		// Put neuron information back into input.
 		for(int i = 0; i < numNeurons; i++) {
-			inputs.put(i + numInputs, outputs.get(i + numOutputs));
+			in[inOff + i + numInputs] = out[outOff + i + numOutputs];
+		}
+		
+		return energy;
+	}
+	
+	/**
+	 * float version of evaluate(). Each row is summed in four independent lanes so that the
+	 * inner loop has no dependency from one element to the next and can be vectorized.
+	 */
+	static double evaluate(int numInputs, int numOutputs, int numNeurons,
+			float[] w, int wOff, float[] in, int inOff, float[] out, int outOff) {
+		int rows = numOutputs + numNeurons;
+		int cols = numInputs + numNeurons;
+		int cols4 = cols & ~3;
+		
+		// Tick.
+		float norm1 = 0f;
+		for(int r = 0; r < rows; r++) {
+			float s0 = 0f, s1 = 0f, s2 = 0f, s3 = 0f;
+			int row = wOff + r * cols;
+			int c = 0;
+			for(; c < cols4; c += 4) {
+				s0 += w[row + c] * in[inOff + c];
+				s1 += w[row + c + 1] * in[inOff + c + 1];
+				s2 += w[row + c + 2] * in[inOff + c + 2];
+				s3 += w[row + c + 3] * in[inOff + c + 3];
+			}
+			for(; c < cols; c++)
+				s0 += w[row + c] * in[inOff + c];
+			float sum = (s0 + s1) + (s2 + s3);
+			norm1 += Math.abs(sum);
+			// Apply cutoff function to neurons and outputs.
+			out[outOff + r] = cutoff(sum);
+		}
+		
+		// Compute energy.
+		double energy = 0;
+		energy += ENERGY_PER_FIRE*norm1;
+		energy += UPKEEP*numNeurons;
+		
+		// Put neuron information back into input.
+		for(int i = 0; i < numNeurons; i++) {
+			in[inOff + i + numInputs] = out[outOff + i + numOutputs];
 		}
 		
 		return energy;
@@ -87,28 +188,110 @@ public class MatrixBrain implements IBrain {
 	@Override
 	public void setInput(int id, double val) {
 		if(id >= 0 && id < numInputs) {
-			inputs.put(id,val);
+			if(group != null) group.setInput(slot, id, val);
+			else if(single) inputs_f[id] = (float) val;
+			else inputs[id] = val;
 		}
 	}
 
+	@Override
+	public void setInputs(double[] values, int count) {
+		int n = Math.min(count, numInputs);
+		if(group != null) group.setInputs(slot, values, n);
+		else if(single) {
+			for(int id = 0; id < n; id++)
+				inputs_f[id] = (float) values[id];
+		}
+		else System.arraycopy(values, 0, inputs, 0, n);
+	}
+
 	@Override
 	public double getOutput(int id) {
 		if(id >= 0 && id < numOutputs) {
-			return outputs.get(id);
+			if(group != null) return group.getOutput(slot, id);
+			return single ? outputs_f[id] : outputs[id];
 		}
 		return 0;
 	}
 
+	@Override
+	public void getOutputs(double[] values, int count) {
+		int n = Math.min(count, numOutputs);
+		if(group != null) group.getOutputs(slot, values, n);
+		else if(single) {
+			for(int id = 0; id < n; id++)
+				values[id] = outputs_f[id];
+		}
+		else System.arraycopy(outputs, 0, values, 0, n);
+		for(int id = n; id < count; id++)
+			values[id] = 0;
+	}
+	
+	int getNumInputs() {
+		return numInputs;
+	}
+	
+	int getNumOutputs() {
+		return numOutputs;
+	}
+	
+	int getNumNeurons() {
+		return numNeurons;
+	}
+	
+	boolean isSingle() {
+		return single;
+	}
+	
+	/**
+	 * move this brain's state into a batch group (weights never change, so this brain keeps its
+	 * own copy of them too)
+	 */
+	void attach(MatrixBrainBatch.Group group, int slot) {
+		int wsize = group.rows * group.cols;
+		if(single) {
+			System.arraycopy(weights_f, 0, group.weights_f, slot * wsize, wsize);
+			System.arraycopy(inputs_f, 0, group.inputs_f, slot * group.cols, group.cols);
+			System.arraycopy(outputs_f, 0, group.outputs_f, slot * group.rows, group.rows);
+		} else {
+			System.arraycopy(weights, 0, group.weights, slot * wsize, wsize);
+			System.arraycopy(inputs, 0, group.inputs, slot * group.cols, group.cols);
+			System.arraycopy(outputs, 0, group.outputs, slot * group.rows, group.rows);
+		}
+		group.energy[slot] = energy;
+		this.group = group;
+		this.slot = slot;
+	}
+	
+	/**
+	 * take this brain's state back out of its batch group
+	 */
+	void detach() {
+		if(single) {
+			System.arraycopy(group.inputs_f, slot * group.cols, inputs_f, 0, group.cols);
+			System.arraycopy(group.outputs_f, slot * group.rows, outputs_f, 0, group.rows);
+		} else {
+			System.arraycopy(group.inputs, slot * group.cols, inputs, 0, group.cols);
+			System.arraycopy(group.outputs, slot * group.rows, outputs, 0, group.rows);
+		}
+		energy = group.energy[slot];
+		group = null;
+	}
+
 	@Override
 	public Gene<? extends IBrain> getGene() {
 		return gene;
 	}
 	
 	// Edit this function if you want to change the cutoff in tick().
-	private double cutoff(double x) {
+	private static double cutoff(double x) {
 		return x < 0.5 ? 0 : (x > 1 ? 1 : 2*x - 1 );
 	}
 	
+	private static float cutoff(float x) {
+		return x < 0.5f ? 0f : (x > 1f ? 1f : 2f*x - 1f );
+	}
+	
 	//////////
 	// Gene //
 	//////////
@@ -135,6 +318,14 @@ public class MatrixBrain implements IBrain {
 			return gene;
 		}
 		
+		public static BrainGene randomGene(int numInputs, int numOutputs, int numNeurons) {
+			BrainGene gene = new BrainGene(numInputs,numOutputs);
+			gene.numNeurons = numNeurons;
+			gene.weights = DoubleMatrix.zeros(numOutputs + numNeurons, numInputs + numNeurons);
+			gene.randomize();
+			return gene;
+		}
+		
 		public BrainGene(int numInputs, int numOutputs) {
 			super(ADD_NEURON, DEL_NEURON, ALTER_CONNECTION, ALTER_CONNECTION_CHANCE);
 			setMutationRate(ADD_NEURON,MUT_ADD_NEURON);
@@ -200,7 +391,7 @@ public class MatrixBrain implements IBrain {
 
 		@Override
 		public MatrixBrain create(double posx, double posy, Environment e) {
-			return new MatrixBrain(this);
+			return new MatrixBrain(this, SINGLE);
 		}
 
 		@Override
@@ -268,4 +459,38 @@ public class MatrixBrain implements IBrain {
 		
 	}
 
+	/**
+	 * Compares float and double precision: builds both from the same random genes, drives them
+	 * with the same inputs, and prints how far their outputs and energy use drift apart.
+	 */
+	public static void main(String[] args){
+		int inputs = 4, outputs = 5, ticks = 2000;
+		Random r = new Random(Config.instance.getLong("SEED"));
+		for(int neurons : new int[] {0, 8, 64, 256}) {
+			BrainGene gene = BrainGene.randomGene(inputs, outputs, neurons);
+			MatrixBrain dbl = new MatrixBrain(gene, false);
+			MatrixBrain flt = new MatrixBrain(gene, true);
+			double max_output_diff = 0, max_energy_diff = 0;
+			int flips = 0;
+			for(int t = 0; t < ticks; t++) {
+				for(int i = 0; i < inputs; i++) {
+					double val = r.nextDouble();
+					dbl.setInput(i, val);
+					flt.setInput(i, val);
+				}
+				double e_dbl = dbl.tick();
+				double e_flt = flt.tick();
+				max_energy_diff = Math.max(max_energy_diff, Math.abs(e_dbl - e_flt) / Math.max(e_dbl, 1e-12));
+				for(int o = 0; o < outputs; o++) {
+					double out_dbl = dbl.getOutput(o), out_flt = flt.getOutput(o);
+					max_output_diff = Math.max(max_output_diff, Math.abs(out_dbl - out_flt));
+					// an output that is on in one and off in the other
+					if((out_dbl == 0) != (out_flt == 0)) flips++;
+				}
+			}
+			System.out.printf("%4d neurons: max output difference %.3g, max relative energy difference %.3g, "
+					+ "%d of %d outputs switched on/off differently\n",
+					neurons, max_output_diff, max_energy_diff, flips, ticks * outputs);
+		}
+	}
 }
@@ -0,0 +1,218 @@
+package bio.organisms.brain.ann;
+
+import java.util.ArrayList;
+
+import environment.ChunkScheduler;
+import bio.organisms.brain.IBrain;
+
+/**
+ * Evaluates every MatrixBrain in an environment in one pass. Brains with the same shape (inputs,
+ * outputs and neurons) and precision share a Group, which packs their weights, inputs and outputs
+ * into flat arrays one brain after another, so a tick is a single walk over each group's memory
+ * instead of one matrix library call (and allocation) per brain.
+ *
+ * Call tick() once per simulation tick after senses have set the inputs; each brain's own tick()
+ * then just reports the energy it used. Each group's brains are split into ranges across the
+ * scheduler's threads; a brain only writes its own outputs, so results don't depend on the split.
+ * Adding and removing must happen on one thread.
+ *
+ * @author wrongu
+ *
+ */
+public class MatrixBrainBatch {
+
+	private static final int INITIAL_CAPACITY = 16;
+	/** fewest brains worth handing to another thread */
+	private static final int MIN_BRAINS_PER_TASK = 64;
+
+	private ArrayList<Group> groups;
+
+	/**
+	 * all brains of one shape and precision. Brain k's weights (row-major) start at k*rows*cols,
+	 * its inputs at k*cols and its outputs at k*rows; only the arrays of the group's precision are
+	 * allocated.
+	 */
+	static class Group {
+		final int numInputs, numOutputs, numNeurons, rows, cols;
+		final boolean single;
+		double[] weights, inputs, outputs, energy;
+		float[] weights_f, inputs_f, outputs_f;
+		MatrixBrain[] owner;
+		int size;
+		final ChunkScheduler.RangeTask tickTask = new ChunkScheduler.RangeTask() {
+			public void run(int from, int to) {
+				tick(from, to);
+			}
+		};
+
+		Group(int numInputs, int numOutputs, int numNeurons, boolean single) {
+			this.numInputs = numInputs;
+			this.numOutputs = numOutputs;
+			this.numNeurons = numNeurons;
+			this.single = single;
+			this.rows = numOutputs + numNeurons;
+			this.cols = numInputs + numNeurons;
+			this.size = 0;
+			allocate(INITIAL_CAPACITY);
+		}
+
+		private void allocate(int capacity) {
+			if(single){
+				weights_f = grow(weights_f, capacity * rows * cols, size * rows * cols);
+				inputs_f = grow(inputs_f, capacity * cols, size * cols);
+				outputs_f = grow(outputs_f, capacity * rows, size * rows);
+			} else{
+				weights = grow(weights, capacity * rows * cols, size * rows * cols);
+				inputs = grow(inputs, capacity * cols, size * cols);
+				outputs = grow(outputs, capacity * rows, size * rows);
+			}
+			energy = grow(energy, capacity, size);
+			MatrixBrain[] new_owner = new MatrixBrain[capacity];
+			if(owner != null) System.arraycopy(owner, 0, new_owner, 0, size);
+			owner = new_owner;
+		}
+
+		private static double[] grow(double[] old, int length, int used) {
+			double[] arr = new double[length];
+			if(old != null) System.arraycopy(old, 0, arr, 0, used);
+			return arr;
+		}
+
+		private static float[] grow(float[] old, int length, int used) {
+			float[] arr = new float[length];
+			if(old != null) System.arraycopy(old, 0, arr, 0, used);
+			return arr;
+		}
+
+		boolean fits(MatrixBrain b) {
+			return b.getNumInputs() == numInputs && b.getNumOutputs() == numOutputs && b.getNumNeurons() == numNeurons
+					&& b.isSingle() == single;
+		}
+
+		void setInput(int slot, int id, double val) {
+			if(single) inputs_f[slot * cols + id] = (float) val;
+			else inputs[slot * cols + id] = val;
+		}
+
+		void setInputs(int slot, double[] values, int count) {
+			if(single){
+				for(int id = 0; id < count; id++)
+					inputs_f[slot * cols + id] = (float) values[id];
+			} else
+				System.arraycopy(values, 0, inputs, slot * cols, count);
+		}
+
+		double getOutput(int slot, int id) {
+			return single ? outputs_f[slot * rows + id] : outputs[slot * rows + id];
+		}
+
+		void getOutputs(int slot, double[] values, int count) {
+			if(single){
+				for(int id = 0; id < count; id++)
+					values[id] = outputs_f[slot * rows + id];
+			} else
+				System.arraycopy(outputs, slot * rows, values, 0, count);
+		}
+
+		void add(MatrixBrain b) {
+			if(size == owner.length) allocate(2 * size);
+			owner[size] = b;
+			b.attach(this, size);
+			size++;
+		}
+
+		void remove(MatrixBrain b) {
+			int slot = b.slot;
+			b.detach();
+			int last = --size;
+			if(slot != last){
+				if(single){
+					System.arraycopy(weights_f, last * rows * cols, weights_f, slot * rows * cols, rows * cols);
+					System.arraycopy(inputs_f, last * cols, inputs_f, slot * cols, cols);
+					System.arraycopy(outputs_f, last * rows, outputs_f, slot * rows, rows);
+				} else{
+					System.arraycopy(weights, last * rows * cols, weights, slot * rows * cols, rows * cols);
+					System.arraycopy(inputs, last * cols, inputs, slot * cols, cols);
+					System.arraycopy(outputs, last * rows, outputs, slot * rows, rows);
+				}
+				energy[slot] = energy[last];
+				owner[slot] = owner[last];
+				owner[slot].slot = slot;
+			}
+			owner[last] = null;
+		}
+
+		/**
+		 * evaluate the brains in slots 'from' up to (not including) 'to'
+		 */
+		void tick(int from, int to) {
+			int wsize = rows * cols;
+			if(single){
+				for(int k = from; k < to; k++)
+					energy[k] = MatrixBrain.evaluate(numInputs, numOutputs, numNeurons,
+							weights_f, k * wsize, inputs_f, k * cols, outputs_f, k * rows);
+			} else{
+				for(int k = from; k < to; k++)
+					energy[k] = MatrixBrain.evaluate(numInputs, numOutputs, numNeurons,
+							weights, k * wsize, inputs, k * cols, outputs, k * rows);
+			}
+		}
+	}
+
+	public MatrixBrainBatch() {
+		groups = new ArrayList<Group>();
+	}
+
+	/**
+	 * start evaluating a brain here (does nothing if it isn't a MatrixBrain or is already in a batch)
+	 */
+	public void add(IBrain brain) {
+		if(!(brain instanceof MatrixBrain)) return;
+		MatrixBrain b = (MatrixBrain) brain;
+		if(b.group != null) return;
+		for(Group g : groups){
+			if(g.fits(b)){
+				g.add(b);
+				return;
+			}
+		}
+		Group g = new Group(b.getNumInputs(), b.getNumOutputs(), b.getNumNeurons(), b.isSingle());
+		groups.add(g);
+		g.add(b);
+	}
+
+	/**
+	 * stop evaluating a brain here; it goes back to ticking on its own.
+	 */
+	public void remove(IBrain brain) {
+		if(!(brain instanceof MatrixBrain)) return;
+		MatrixBrain b = (MatrixBrain) brain;
+		for(int i = 0; i < groups.size(); i++){
+			Group g = groups.get(i);
+			if(b.group == g){
+				g.remove(b);
+				// drop shapes that have died out
+				if(g.size == 0){
+					groups.set(i, groups.get(groups.size() - 1));
+					groups.remove(groups.size() - 1);
+				}
+				return;
+			}
+		}
+	}
+
+	public int size() {
+		int n = 0;
+		for(Group g : groups)
+			n += g.size;
+		return n;
+	}
+
+	/**
+	 * evaluate every brain in the batch once, using the scheduler's threads
+	 */
+	public void tick(ChunkScheduler scheduler) {
+		for(Group g : groups)
+			scheduler.forEachRange(g.size, MIN_BRAINS_PER_TASK, g.tickTask);
+	}
+}
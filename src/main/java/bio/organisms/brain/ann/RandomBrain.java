@@ -23,10 +23,17 @@ public class RandomBrain implements IBrain {
 
 	public void setInput(int id, double val) {}
 
+	public void setInputs(double[] values, int count) {}
+
 	public double getOutput(int id) {
 		return rand.nextDouble();
 	}
 
+	public void getOutputs(double[] values, int count) {
+		for(int id = 0; id < count; id++)
+			values[id] = getOutput(id);
+	}
+
 	public Gene<? extends IBrain> getGene() {
 		return null;
 	}
@@ -2,6 +2,7 @@ package bio.organisms.brain.senses;
 
 import environment.Environment;
 import bio.organisms.AbstractOrganism;
+import bio.organisms.SCOStore;
 import bio.organisms.brain.SenseSystem;
 
 public class EnergySense extends SenseSystem {
@@ -11,10 +12,13 @@ public class EnergySense extends SenseSystem {
 	}
 
 	@Override
-	public void senseAll() {
-		for (AbstractOrganism orgo : env.getAll()) {
-			orgo.setBrainInput(sense_id, orgo.getEnergy());
-		}
+	public double value(AbstractOrganism orgo) {
+		return orgo.getEnergy();
+	}
+	
+	@Override
+	public double value(SCOStore store, int slot) {
+		return store.getEnergy(slot);
 	}
 
 }
@@ -4,6 +4,7 @@ import environment.Environment;
 import environment.RandomFoodEnvironment;
 import applet.Config;
 import bio.organisms.AbstractOrganism;
+import bio.organisms.SCOStore;
 import bio.organisms.SimpleCircleOrganism;
 import bio.organisms.brain.SenseSystem;
 
@@ -18,18 +19,22 @@ public class FoodSense extends SenseSystem{
 	}
 
 	@Override
-	public void senseAll() {
-		for(AbstractOrganism org : env.getAll()) {
-			if(org instanceof SimpleCircleOrganism) {
-				SimpleCircleOrganism sco = (SimpleCircleOrganism) org;
-				double x = sco.getX();
-				double y = sco.getY();
-				double dirx = sco.getDirX();
-				double diry = sco.getDirY();
-				double terrain = ((RandomFoodEnvironment)env).getGenerator().terrainValue(x - offset*diry, y + offset*dirx);
-				sco.setBrainInput(sense_id, terrain*FOOD_SENSITIVITY);
-			}
+	public double value(AbstractOrganism org) {
+		if(org instanceof SimpleCircleOrganism) {
+			SimpleCircleOrganism sco = (SimpleCircleOrganism) org;
+			return value(sco.getX(), sco.getY(), sco.getDirX(), sco.getDirY());
 		}
+		return Double.NaN;
+	}
+	
+	@Override
+	public double value(SCOStore store, int slot) {
+		return value(store.getX(slot), store.getY(slot), store.getDirX(slot), store.getDirY(slot));
+	}
+	
+	private double value(double x, double y, double dirx, double diry) {
+		double terrain = ((RandomFoodEnvironment)env).getFoodField().terrainValue(x - offset*diry, y + offset*dirx);
+		return terrain*FOOD_SENSITIVITY;
 	}
 	
 
@@ -3,6 +3,7 @@ package bio.organisms.brain.senses;
 import environment.Environment;
 import applet.Config;
 import bio.organisms.AbstractOrganism;
+import bio.organisms.SCOStore;
 import bio.organisms.SimpleCircleOrganism;
 import bio.organisms.brain.SenseSystem;
 
@@ -15,13 +16,17 @@ public class Pain extends SenseSystem{
 	}
 
 	@Override
-	public void senseAll() {
-		for(AbstractOrganism org : env.getAll()) {
-			if(org instanceof SimpleCircleOrganism) {
-				SimpleCircleOrganism sco = (SimpleCircleOrganism) org;
-				sco.setBrainInput(sense_id, sco.getDamageThisTurn()*PAIN_SENSITIVITY);
-			}
+	public double value(AbstractOrganism org) {
+		if(org instanceof SimpleCircleOrganism) {
+			SimpleCircleOrganism sco = (SimpleCircleOrganism) org;
+			return sco.getDamageThisTurn()*PAIN_SENSITIVITY;
 		}
+		return Double.NaN;
+	}
+	
+	@Override
+	public double value(SCOStore store, int slot) {
+		return store.getDamageThisTurn(slot)*PAIN_SENSITIVITY;
 	}
 
 }
@@ -0,0 +1,150 @@
+package environment;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import utils.grid.Grid;
+import bio.organisms.AbstractOrganism;
+
+/**
+ * Runs a Task over every chunk of the Grid (or a RangeTask over ranges of indices), either one
+ * after another on the calling thread or spread across a ForkJoinPool. Tasks must only write to
+ * the organisms in the chunk they are given; anything else has to be staged and applied
+ * afterwards on a single thread. Following that rule, serial and parallel runs give identical
+ * results.
+ *
+ * @author wrongu
+ *
+ */
+public class ChunkScheduler {
+	
+	/** split work until each task has about this many chunks per thread-share */
+	private static final int TASKS_PER_THREAD = 4;
+
+	public static interface Task {
+		public void run(Grid<AbstractOrganism>.Chunk chunk);
+	}
+	
+	/** a Task that is also told the chunk's position in the list, e.g. to pick per-chunk scratch space */
+	public static interface IndexedTask {
+		public void run(int index, Grid<AbstractOrganism>.Chunk chunk);
+	}
+	
+	/** work on the indices from 'from' up to (not including) 'to' */
+	public static interface RangeTask {
+		public void run(int from, int to);
+	}
+	
+	/** null when running serially */
+	private ForkJoinPool pool;
+	
+	/**
+	 * @param parallel whether to use more than the calling thread
+	 * @param threads number of worker threads (0 for one per available processor)
+	 */
+	public ChunkScheduler(boolean parallel, int threads){
+		if(parallel)
+			pool = threads > 0 ? new ForkJoinPool(threads) : new ForkJoinPool();
+	}
+	
+	public boolean isParallel(){
+		return pool != null;
+	}
+	
+	/**
+	 * Run the task on each chunk and return when all are done.
+	 */
+	public void forEachChunk(List<Grid<AbstractOrganism>.Chunk> chunks, final Task task){
+		forEachChunk(chunks, new IndexedTask() {
+			public void run(int index, Grid<AbstractOrganism>.Chunk chunk) {
+				task.run(chunk);
+			}
+		});
+	}
+	
+	/**
+	 * Run the task on each chunk (along with its index in the list) and return when all are done.
+	 */
+	public void forEachChunk(List<Grid<AbstractOrganism>.Chunk> chunks, IndexedTask task){
+		if(pool == null || chunks.size() < 2){
+			for(int i = 0; i < chunks.size(); i++)
+				task.run(i, chunks.get(i));
+		} else{
+			int grain = Math.max(1, chunks.size() / (TASKS_PER_THREAD * pool.getParallelism()));
+			pool.invoke(new ChunkRange(chunks, task, 0, chunks.size(), grain));
+		}
+	}
+	
+	/**
+	 * Split the indices 0 to n-1 into ranges of at least min_grain and run the task on each; return
+	 * when all are done.
+	 */
+	public void forEachRange(int n, int min_grain, RangeTask task){
+		if(n <= 0) return;
+		int grain = pool == null ? n : Math.max(min_grain, n / (TASKS_PER_THREAD * pool.getParallelism()));
+		if(n <= grain)
+			task.run(0, n);
+		else
+			pool.invoke(new IndexRange(task, 0, n, grain));
+	}
+	
+	public void shutdown(){
+		if(pool != null) pool.shutdown();
+	}
+	
+	private static class ChunkRange extends RecursiveAction {
+
+		private static final long serialVersionUID = 3392735045829618764L;
+		
+		private List<Grid<AbstractOrganism>.Chunk> chunks;
+		private IndexedTask task;
+		private int lo, hi, grain;
+		
+		public ChunkRange(List<Grid<AbstractOrganism>.Chunk> chunks, IndexedTask task, int lo, int hi, int grain){
+			this.chunks = chunks;
+			this.task = task;
+			this.lo = lo;
+			this.hi = hi;
+			this.grain = grain;
+		}
+
+		@Override
+		protected void compute() {
+			if(hi - lo <= grain){
+				for(int i = lo; i < hi; i++)
+					task.run(i, chunks.get(i));
+			} else{
+				int mid = (lo + hi) >>> 1;
+				invokeAll(new ChunkRange(chunks, task, lo, mid, grain),
+						new ChunkRange(chunks, task, mid, hi, grain));
+			}
+		}
+	}
+	
+	private static class IndexRange extends RecursiveAction {
+
+		private static final long serialVersionUID = -6115723190263458461L;
+		
+		private RangeTask task;
+		private int lo, hi, grain;
+		
+		public IndexRange(RangeTask task, int lo, int hi, int grain){
+			this.task = task;
+			this.lo = lo;
+			this.hi = hi;
+			this.grain = grain;
+		}
+
+		@Override
+		protected void compute() {
+			if(hi - lo <= grain){
+				task.run(lo, hi);
+			} else{
+				int mid = (lo + hi) >>> 1;
+				invokeAll(new IndexRange(task, lo, mid, grain),
+						new IndexRange(task, mid, hi, grain));
+			}
+		}
+	}
+}
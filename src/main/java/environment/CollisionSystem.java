@@ -0,0 +1,125 @@
+package environment;
+
+import java.util.List;
+
+import utils.grid.Grid;
+import bio.organisms.AbstractOrganism;
+
+/**
+ * Finds every pair of organisms close enough to collide, using the Grid's chunks as the
+ * broadphase, and hands each pair to AbstractOrganism.collide() exactly once.
+ *
+ * Finding pairs is done chunk by chunk (in parallel if the scheduler is), with each chunk
+ * writing only to its own pair list. The pairs are then resolved on one thread in chunk
+ * order. Organisms stage what a collision does to them and apply it in updatePhysics(), so
+ * the result doesn't depend on which pair is resolved first.
+ *
+ * @author wrongu
+ *
+ */
+public class CollisionSystem {
+
+	private Grid<AbstractOrganism> grid;
+	/** one per chunk (by position in the list given to collide()), reused every tick */
+	private PairList[] pairs;
+	/** largest collision radius of any organism this tick */
+	private double max_radius;
+
+	private ChunkScheduler.IndexedTask measureTask, findTask;
+
+	public CollisionSystem(Grid<AbstractOrganism> grid){
+		this.grid = grid;
+		this.pairs = new PairList[0];
+		measureTask = new ChunkScheduler.IndexedTask() {
+			public void run(int index, Grid<AbstractOrganism>.Chunk chunk) {
+				double r = 0.0;
+				for(int i = 0; i < chunk.size(); i++)
+					r = Math.max(r, chunk.get(i).getCollisionRadius());
+				pairs[index].max_radius = r;
+			}
+		};
+		findTask = new ChunkScheduler.IndexedTask() {
+			public void run(int index, Grid<AbstractOrganism>.Chunk chunk) {
+				pairs[index].find(chunk);
+			}
+		};
+	}
+
+	/**
+	 * find and resolve all collisions between organisms in the given chunks
+	 */
+	public void collide(List<Grid<AbstractOrganism>.Chunk> chunks, ChunkScheduler scheduler){
+		if(pairs.length < chunks.size()){
+			PairList[] bigger = new PairList[Math.max(chunks.size(), 2 * pairs.length)];
+			System.arraycopy(pairs, 0, bigger, 0, pairs.length);
+			for(int i = pairs.length; i < bigger.length; i++)
+				bigger[i] = new PairList();
+			pairs = bigger;
+		}
+
+		scheduler.forEachChunk(chunks, measureTask);
+		max_radius = 0.0;
+		for(int i = 0; i < chunks.size(); i++)
+			max_radius = Math.max(max_radius, pairs[i].max_radius);
+		if(max_radius <= 0.0)
+			return;
+
+		scheduler.forEachChunk(chunks, findTask);
+		for(int i = 0; i < chunks.size(); i++)
+			pairs[i].resolve();
+	}
+
+	/**
+	 * The overlapping pairs found from one chunk. Each organism in the chunk looks for
+	 * neighbors 'after' it (higher y, then higher x, then higher grid index), so that each
+	 * pair is found by only one of its members.
+	 */
+	private class PairList implements Grid.Visitor<AbstractOrganism> {
+
+		private AbstractOrganism[] first = new AbstractOrganism[16], second = new AbstractOrganism[16];
+		private int size;
+		private double max_radius;
+		/** the organism whose neighbors are being visited */
+		private AbstractOrganism current;
+
+		void find(Grid<AbstractOrganism>.Chunk chunk){
+			size = 0;
+			for(int i = 0; i < chunk.size(); i++){
+				current = chunk.get(i);
+				double r = current.getCollisionRadius();
+				if(r > 0.0)
+					grid.forEachInDisk(current.getX(), current.getY(), r + CollisionSystem.this.max_radius, this);
+			}
+			current = null;
+		}
+
+		public void visit(AbstractOrganism other){
+			double dx = other.getX() - current.getX();
+			double dy = other.getY() - current.getY();
+			boolean after = dy > 0 || (dy == 0 && (dx > 0 || (dx == 0 && other.getGridIndex() > current.getGridIndex())));
+			if(!after)
+				return;
+			double reach = current.getCollisionRadius() + other.getCollisionRadius();
+			if(dx*dx + dy*dy >= reach*reach)
+				return;
+			if(size == first.length){
+				AbstractOrganism[] f = new AbstractOrganism[2 * size], s = new AbstractOrganism[2 * size];
+				System.arraycopy(first, 0, f, 0, size);
+				System.arraycopy(second, 0, s, 0, size);
+				first = f;
+				second = s;
+			}
+			first[size] = current;
+			second[size] = other;
+			size++;
+		}
+
+		void resolve(){
+			for(int i = 0; i < size; i++){
+				first[i].collide(second[i]);
+				first[i] = second[i] = null;
+			}
+			size = 0;
+		}
+	}
+}
@@ -11,9 +11,11 @@ import java.util.Random;
 import utils.grid.Grid;
 import applet.Config;
 import bio.organisms.AbstractOrganism;
-import bio.organisms.Entity;
+import bio.organisms.EnergyDrains;
+import bio.organisms.SCOStore;
 import bio.organisms.brain.ActionSystem;
 import bio.organisms.brain.SenseSystem;
+import bio.organisms.brain.ann.MatrixBrainBatch;
 
 public abstract class Environment implements IDrawable {
 
@@ -22,6 +24,11 @@ public abstract class Environment implements IDrawable {
 	public static final int GRID_SIZE = Config.instance.getInt("CHUNK_SIZE");
 	
 	private static final int TICKS_PER_EMPTY = Config.instance.getInt("CLEANUP_EVERY");
+	private static final boolean PARALLEL = Config.instance.getBoolean("PARALLEL_TICK");
+	private static final int THREADS = Config.instance.getInt("PARALLEL_THREADS");
+	private static final boolean USE_SCO_STORE = Config.instance.getBoolean("SCO_STORE");
+	private static final boolean COLLISIONS = Config.instance.getBoolean("COLLISIONS");
+	private static final boolean BRAIN_BATCH = Config.instance.getBoolean("BRAIN_BATCH");
 
 //	protected List<AbstractOrganism> organisms;
 	protected Grid<AbstractOrganism> grid;
@@ -34,9 +41,31 @@ public abstract class Environment implements IDrawable {
 	
 	public List<? extends SenseSystem> sense_systems;
 	public List<? extends ActionSystem> action_systems;
+	
+	/** array storage for SimpleCircleOrganisms (null if they keep their own state) */
+	protected SCOStore sco_store;
+	/** evaluates all MatrixBrains together (null if each brain ticks on its own) */
+	protected MatrixBrainBatch brain_batch;
+	
+	// per-chunk work for each phase of update()
+	protected ChunkScheduler scheduler;
+	/** null if organisms pass through each other */
+	protected CollisionSystem collisions;
+	private List<Grid<AbstractOrganism>.Chunk> current_chunks;
+	private ChunkScheduler.Task senseTask, brainTask, actionTask, prePhysicsTask, physicsTask, movedTask;
+	/** the same phases over ranges of sco_store slots, used while the store holds every organism */
+	private ChunkScheduler.RangeTask senseSlotsTask, actionSlotsTask, physicsSlotsTask;
+	/** smallest range of slots worth handing to another thread */
+	private static final int MIN_SLOTS_PER_TASK = 256;
+	/** each thread's space for one organism's sense values */
+	private ThreadLocal<double[]> sense_row;
+	/** each thread's space for one organism's brain outputs, read by the actions */
+	private ThreadLocal<double[]> action_row;
 
 	public static double FRICTION = Config.instance.getDouble("FRICTION");
 	public static double VISCOSITY = Config.instance.getDouble("VISCOSITY");
+	/** whether to print periodic debugging info and per-organism energy stats on death */
+	public static boolean VERBOSE = Config.instance.getBoolean("VERBOSE");
 
 	public Environment(long seed){
 		this(0D, 0D, Topology.INFINITE, seed);
@@ -49,7 +78,87 @@ public abstract class Environment implements IDrawable {
 		height = h;
 		seedRand = new Random(seed);	
 		tickNumber = 0;
+		scheduler = new ChunkScheduler(PARALLEL, THREADS);
+		sco_store = USE_SCO_STORE ? new SCOStore() : null;
+		collisions = COLLISIONS ? new CollisionSystem(grid) : null;
+		brain_batch = BRAIN_BATCH ? new MatrixBrainBatch() : null;
 		initSensesAndActions();
+		initTasks();
+	}
+	
+	private void initTasks(){
+		int width = 0;
+		for(SenseSystem sense : sense_systems)
+			width = Math.max(width, sense.getID() + 1);
+		final int sense_width = width;
+		sense_row = new ThreadLocal<double[]>() {
+			@Override
+			protected double[] initialValue() {
+				return new double[sense_width];
+			}
+		};
+		width = 0;
+		for(ActionSystem act : action_systems)
+			width = Math.max(width, act.getID() + 1);
+		final int action_width = width;
+		action_row = new ThreadLocal<double[]>() {
+			@Override
+			protected double[] initialValue() {
+				return new double[action_width];
+			}
+		};
+		senseTask = new ChunkScheduler.Task() {
+			public void run(Grid<AbstractOrganism>.Chunk chunk) {
+				SenseSystem.senseAll(sense_systems, chunk, sense_row.get());
+			}
+		};
+		brainTask = new ChunkScheduler.Task() {
+			public void run(Grid<AbstractOrganism>.Chunk chunk) {
+				for(AbstractOrganism o : chunk)
+					o.tick();
+			}
+		};
+		actionTask = new ChunkScheduler.Task() {
+			public void run(Grid<AbstractOrganism>.Chunk chunk) {
+				ActionSystem.performAll(action_systems, chunk, action_row.get(), TIME_STEP);
+			}
+		};
+		prePhysicsTask = new ChunkScheduler.Task() {
+			public void run(Grid<AbstractOrganism>.Chunk chunk) {
+				for(AbstractOrganism o : chunk)
+					o.preUpdatePhysics();
+			}
+		};
+		physicsTask = new ChunkScheduler.Task() {
+			public void run(Grid<AbstractOrganism>.Chunk chunk) {
+				for(AbstractOrganism o : chunk){
+					o.updatePhysics(TIME_STEP);
+					// tell the grid if o has left this chunk
+					chunk.checkMoved(o);
+				}
+			}
+		};
+		movedTask = new ChunkScheduler.Task() {
+			public void run(Grid<AbstractOrganism>.Chunk chunk) {
+				for(AbstractOrganism o : chunk)
+					chunk.checkMoved(o);
+			}
+		};
+		senseSlotsTask = new ChunkScheduler.RangeTask() {
+			public void run(int from, int to) {
+				SenseSystem.senseRange(sense_systems, sco_store, from, to, sense_row.get());
+			}
+		};
+		actionSlotsTask = new ChunkScheduler.RangeTask() {
+			public void run(int from, int to) {
+				ActionSystem.performRange(action_systems, sco_store, from, to, action_row.get(), TIME_STEP);
+			}
+		};
+		physicsSlotsTask = new ChunkScheduler.RangeTask() {
+			public void run(int from, int to) {
+				sco_store.updatePhysics(from, to, TIME_STEP);
+			}
+		};
 	}
 	
 	protected abstract void initSensesAndActions();
@@ -58,12 +167,16 @@ public abstract class Environment implements IDrawable {
 		return seedRand;
 	}
 	
+	public SCOStore getSCOStore(){
+		return sco_store;
+	}
+	
 	public void addOrganism(AbstractOrganism orgo){
 		next_organisms.add(orgo);
 	}
 
 	public void update(){
-		boolean debug = tickNumber % 100 == 0;
+		boolean debug = VERBOSE && tickNumber % 100 == 0;
 		if(debug)
 			System.out.println("Tick #: " + tickNumber + " Organism count: " + grid.getCount());
 
@@ -75,8 +188,10 @@ public abstract class Environment implements IDrawable {
 		}
 		
 		// before going anywhere.. add new babies to the population and check for dead organisms
-		for(AbstractOrganism baby : next_organisms)
+		for(AbstractOrganism baby : next_organisms){
 			grid.add(baby);
+			if(brain_batch != null) brain_batch.add(baby.getBrain());
+		}
 		next_organisms = new LinkedList<AbstractOrganism>();
 		
 		for(Iterator<AbstractOrganism> i = grid.iterator(); i.hasNext();) {
@@ -84,47 +199,73 @@ public abstract class Environment implements IDrawable {
 			if(! o.is_alive()){
 				o.onDeath(); // Do dead stuff, like feeding predators.
 				i.remove();
-				o.print_energy_stats();
+				if(sco_store != null) sco_store.remove(o);
+				if(brain_batch != null) brain_batch.remove(o.getBrain());
+				if(VERBOSE) o.print_energy_stats();
 			}
 		}
-		// debugging
-		double avg_energy = 0.0;
-		int ogranism_count = 0;
 		
-		// ECS-style input processing
-		for(SenseSystem sense : sense_systems)
-			sense.senseAll();
+		// keep organisms' stored state in the same order the chunks are visited
+		if(sco_store != null && tickNumber % TICKS_PER_EMPTY == 0)
+			sco_store.sortBy(grid);
+		// every phase below only touches the organisms in the chunk it is given (cross-organism
+		// effects are staged by the action systems and applied in resolve()), so chunks may be
+		// processed in parallel without changing the outcome.
+		current_chunks = grid.getChunks();
+		// while every organism is in sco_store, senses, actions and physics instead loop over its
+		// slots. Organisms born this tick are added to the store after slot 'stored', so they are
+		// left out of the later phases just as they are left out of the grid.
+		int stored = sco_store != null && sco_store.size() == grid.getCount() ? sco_store.size() : -1;
 		
-		// tick organisms / brains
-		for(AbstractOrganism o : grid) {
-				o.tick();
-				if(debug){
-					ogranism_count++;
-					avg_energy += o.getEnergy();
-				}
-		}
+		// ECS-style input processing (all senses in one pass over each chunk)
+		if(stored >= 0)
+			scheduler.forEachRange(stored, MIN_SLOTS_PER_TASK, senseSlotsTask);
+		else
+			scheduler.forEachChunk(current_chunks, senseTask);
+		
+		// tick organisms / brains (batched brains are all evaluated here first)
+		if(brain_batch != null)
+			brain_batch.tick(scheduler);
+		scheduler.forEachChunk(current_chunks, brainTask);
 
-		if(debug)
+		if(debug){
+			double avg_energy = 0.0;
+			int ogranism_count = 0;
+			for(AbstractOrganism o : grid) {
+				ogranism_count++;
+				avg_energy += o.getEnergy();
+			}
 			System.out.println("Average energy: " + (avg_energy / (double) ogranism_count));
+			if(EnergyDrains.TALLY == EnergyDrains.TALLY_GLOBAL)
+				EnergyDrains.print(EnergyDrains.getGlobalTotals());
+		}
 		
-		// ECS-style outputs
+		// ECS-style outputs (all actions in one pass over each chunk, then their staged effects)
+		if(stored >= 0)
+			scheduler.forEachRange(stored, MIN_SLOTS_PER_TASK, actionSlotsTask);
+		else
+			scheduler.forEachChunk(current_chunks, actionTask);
 		for(ActionSystem act : action_systems)
-			act.performAll(dt);
+			act.resolve(dt);
 
-		// second (before real physics update), check for collisions
-		// TODO faster than O(o^2) collision checks
-		//doCollisions();
+		// second (before real physics update), check for collisions. Their effects are staged
+		// and applied by updatePhysics().
+		if(collisions != null)
+			collisions.collide(current_chunks, scheduler);
 		
 		// next, prepare physics updates
-		for(AbstractOrganism o : grid)
-				o.preUpdatePhysics();
+		scheduler.forEachChunk(current_chunks, prePhysicsTask);
 		
 		// finally, update the physics engine
-		for(AbstractOrganism o : grid)
-				o.updatePhysics(dt);
+		if(stored >= 0){
+			scheduler.forEachRange(stored, MIN_SLOTS_PER_TASK, physicsSlotsTask);
+			scheduler.forEachChunk(current_chunks, movedTask);
+		} else
+			scheduler.forEachChunk(current_chunks, physicsTask);
+		current_chunks = null;
 		
-		// update grid structure.
-		grid.updateChunks();
+		// update grid structure (only the chunks that physics saw organisms leave).
+		grid.updateMovedChunks();
 		
 		tickNumber++;
 	}
@@ -148,28 +289,31 @@ public abstract class Environment implements IDrawable {
 	 * @return
 	 */
 	public LinkedList<AbstractOrganism> getInDisk(double x, double y, double r) {
-		LinkedList<AbstractOrganism> orgs = new LinkedList<AbstractOrganism>();
-		for(AbstractOrganism o : grid.getInDisk(x,y,r)) {
-			orgs.add(o);
-		}
-		return orgs;
+		return grid.getInDisk(x,y,r);
+	}
+	
+	/**
+	 * Calls visitor.visit() on each AbstractOrganism within a radius r of (x,y),
+	 * without allocating anything.
+	 */
+	public void forEachInDisk(double x, double y, double r, Grid.Visitor<? super AbstractOrganism> visitor) {
+		grid.forEachInDisk(x, y, r, visitor);
+	}
+	
+	/**
+	 * Returns the number of AbstractOrganisms within a radius r of (x,y).
+	 */
+	public int countInDisk(double x, double y, double r) {
+		return grid.countInDisk(x, y, r);
 	}
 	
 	public LinkedList<AbstractOrganism> getInDiskMut(double x, double y, double r) {
-		LinkedList<AbstractOrganism> orgs = new LinkedList<AbstractOrganism>();
-		for(AbstractOrganism o : grid.getInDiskMut(x,y,r)) {
-			orgs.add(o);
-		}
-		return orgs;
+		return grid.getInDiskMut(x,y,r);
 	}
 	
 	public LinkedList<AbstractOrganism> getInBox(float ... bounds) {
 		if(bounds.length != 4) return null;
-		LinkedList<AbstractOrganism> orgs = new LinkedList<AbstractOrganism>();
-		for(Entity o : grid.getInBox(bounds[0], bounds[2], bounds[1], bounds[3])) {
-			orgs.add((AbstractOrganism)o);
-		}
-		return orgs;
+		return grid.getInBox(bounds[0], bounds[2], bounds[1], bounds[3]);
 	}
 	
 	public int getOrganismCount(){
@@ -188,15 +332,4 @@ public abstract class Environment implements IDrawable {
 		return tickNumber;
 	}
 	
-//	protected void doCollisions(){
-//		for(Chunk c : this.grid){
-//			for(AbstractOrganism a : c){
-//				// TODO remove dependency on PointMass
-//				for(AbstractOrganism b : this.getNearbyAsym(a, 2*PointMass.DEFAULT_RADIUS)){
-//					a.collide(b);
-//				}
-//			}
-//		}
-//	}
-	
 }
@@ -0,0 +1,53 @@
+package environment;
+
+import applet.Config;
+
+/**
+ * Builds an Environment (and its initial population) from the ENV_TYPE in the config, so
+ * that the windowed and headless drivers set up identical simulations.
+ *
+ * @author wrongu
+ *
+ */
+public class EnvironmentFactory {
+
+	public static RandomFoodEnvironment newRandomFoodEnvironment(double food, long seed, int population){
+		RandomFoodEnvironment env = new RandomFoodEnvironment(food, seed);
+		for(int i=0; i<population; i++)
+			env.spawnRandomOrganism();
+		return env;
+	}
+
+	public static TimeVaryingRFE newTimeVaryingRFE(double food, long seed, int population){
+		TimeVaryingRFE env = new TimeVaryingRFE(food, seed);
+		for(int i=0; i<population; i++)
+			env.spawnRandomOrganism();
+		return env;
+	}
+
+	public static TestEnvironment newTestEnvironment(long seed){
+		return new TestEnvironment(seed, false);
+	}
+
+	/**
+	 * Create a new environment of the given type using food, seed, and population from the config
+	 * @param type one of "RandomFoodEnvironment", "TimeVaryingRFE", or "TestEnvironment"
+	 * @return the new environment, or null if type is not recognized
+	 */
+	public static Environment newEnvironment(String type){
+		double food = Config.instance.getDouble("ENV_FOOD");
+		long seed = Config.instance.getLong("SEED");
+		int population = Config.instance.getInt("POPULATION");
+		if(type.equals("RandomFoodEnvironment")) return newRandomFoodEnvironment(food, seed, population);
+		else if(type.equals("TimeVaryingRFE")) return newTimeVaryingRFE(food, seed, population);
+		else if(type.equals("TestEnvironment")) return newTestEnvironment(seed);
+		else return null;
+	}
+
+	/**
+	 * Create a new environment of the type given by ENV_TYPE in the config
+	 */
+	public static Environment fromConfig(){
+		return newEnvironment(Config.instance.getString("ENV_TYPE"));
+	}
+}
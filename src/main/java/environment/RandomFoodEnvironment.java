@@ -12,6 +12,8 @@ import bio.organisms.brain.actions.Turn;
 import bio.organisms.brain.senses.EnergySense;
 import bio.organisms.brain.senses.FoodSense;
 import bio.organisms.brain.senses.Pain;
+import utils.grid.Grid;
+import environment.generators.CachedGenerator;
 import environment.generators.IGenerator;
 import environment.generators.PerlinGenerator;
 
@@ -24,17 +26,47 @@ import environment.generators.PerlinGenerator;
 public class RandomFoodEnvironment extends Environment {
 
 	protected IGenerator generator;
+	/** where food values are read from: the generator itself or a CachedGenerator around it */
+	protected IGenerator food_field;
 	protected double food_energy;
 	private static final double SPAWN_RATE = 0.01;
 	private static final double SPAWN_RADIUS = 50;
 	private static final double TAPER = Config.instance.getDouble("PERLIN_TAPER");
+	private static final boolean FOOD_CACHE = Config.instance.getBoolean("FOOD_CACHE");
+	private static final double FOOD_CACHE_RESOLUTION = Config.instance.getDouble("FOOD_CACHE_RESOLUTION");
+	private static final int FOOD_CACHE_TILES = Config.instance.getInt("FOOD_CACHE_TILES");
 
 	protected static final double FOOD_RADIUS = Config.instance.getDouble("SCO_FOOD_SHARE_RANGE");
 	
+	private ChunkScheduler.Task feedTask;
+	/** each thread's space for the neighbor counts of one chunk */
+	private ThreadLocal<int[]> neighbor_counts;
+	
 	public RandomFoodEnvironment(double energy_per_unit_food, long seed){
 		super(seed);
 		this.food_energy = energy_per_unit_food;
 		this.generator = createGenerator(seed);
+		this.food_field = createFoodField(generator);
+		neighbor_counts = new ThreadLocal<int[]>() {
+			@Override
+			protected int[] initialValue() {
+				return new int[16];
+			}
+		};
+		// feeding only writes to the organism being fed, so chunks can be fed in parallel
+		feedTask = new ChunkScheduler.Task() {
+			public void run(Grid<AbstractOrganism>.Chunk chunk) {
+				int[] counts = neighbor_counts.get();
+				if(counts.length < chunk.size()){
+					counts = new int[2 * chunk.size()];
+					neighbor_counts.set(counts);
+				}
+				grid.countNeighbors(chunk, FOOD_RADIUS, counts);
+				int k = 0;
+				for(AbstractOrganism o : chunk)
+					feed(o, counts[k++]);
+			}
+		};
 	}
 	
 	protected IGenerator createGenerator(long seed){
@@ -53,10 +85,24 @@ public class RandomFoodEnvironment extends Environment {
 		return gen;
 	}
 	
+	/**
+	 * @return the generator to read food values from (cached if FOOD_CACHE is on)
+	 */
+	protected IGenerator createFoodField(IGenerator gen){
+		return FOOD_CACHE ? new CachedGenerator(gen, FOOD_CACHE_RESOLUTION, FOOD_CACHE_TILES) : gen;
+	}
+	
 	public IGenerator getGenerator(){
 		return generator;
 	}
 	
+	/**
+	 * @return the food terrain organisms feed and sense from (may be a cached copy of getGenerator())
+	 */
+	public IGenerator getFoodField(){
+		return food_field;
+	}
+	
 	public double getTau(){
 		return -TAPER*TAPER / Math.log(0.5);
 	}
@@ -65,9 +111,8 @@ public class RandomFoodEnvironment extends Environment {
 	public void update(){
 		super.update();
 
-		for(AbstractOrganism o : grid) {
-			feed(o);
-		}
+		// food is shared between everything within FOOD_RADIUS (counted for a whole chunk at once)
+		scheduler.forEachChunk(grid.getChunks(), feedTask);
 		
 		// Spawn random organisms
 		if(getRandom().nextDouble() < SPAWN_RATE) {
@@ -75,9 +120,11 @@ public class RandomFoodEnvironment extends Environment {
 		}
 	}
 	
-	protected void feed(AbstractOrganism o){
-		double food = this.generator.terrainValue(o.getX(), o.getY())*food_energy;
-		int numberNearby = grid.getInDisk(o.getX(), o.getY(), FOOD_RADIUS).size();
+	/**
+	 * @param numberNearby how many organisms are within FOOD_RADIUS of o (including o)
+	 */
+	protected void feed(AbstractOrganism o, int numberNearby){
+		double food = this.food_field.terrainValue(o.getX(), o.getY())*food_energy;
 		double attackMult = 1 - ((SimpleCircleOrganism)o).getAttackOutput();
 		o.feed(attackMult*food/numberNearby);
 	}
@@ -86,13 +133,8 @@ public class RandomFoodEnvironment extends Environment {
 		if(grid.getCount() == 0) {
 			next_organisms.add(new SimpleCircleOrganism(this, Config.instance.getDouble("INIT_ENERGY"), (getRandom().nextDouble() - 0.5)*SPAWN_RADIUS, (getRandom().nextDouble() - 0.5)*SPAWN_RADIUS));
 		} else {
-			int n = this.getRandom().nextInt(grid.getCount());
-			for(AbstractOrganism o : grid) {
-				if(n-- == 0) {
-					next_organisms.add(new SimpleCircleOrganism(this, 1.0, o.getX() + (getRandom().nextDouble() - 0.5)*SPAWN_RADIUS, o.getY() + (getRandom().nextDouble() - 0.5)*SPAWN_RADIUS));
-					break;
-				}
-			}
+			AbstractOrganism o = grid.getRandom(this.getRandom());
+			next_organisms.add(new SimpleCircleOrganism(this, 1.0, o.getX() + (getRandom().nextDouble() - 0.5)*SPAWN_RADIUS, o.getY() + (getRandom().nextDouble() - 0.5)*SPAWN_RADIUS));
 		}
 		
 	}
@@ -0,0 +1,47 @@
+package environment;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Lock-free triple buffer of WorldSnapshots between one simulation (writer) thread and one
+ * render (reader) thread.
+ *
+ * The writer fills its private 'back' snapshot and swaps it into the shared 'middle' slot. The
+ * reader swaps its private 'front' snapshot with 'middle' whenever middle holds a newer tick.
+ * Neither side ever waits for the other, and neither ever touches a snapshot the other owns.
+ *
+ * @author wrongu
+ *
+ */
+public class SnapshotBuffer {
+
+	private WorldSnapshot back; // owned by writer
+	private final AtomicReference<WorldSnapshot> middle;
+	private WorldSnapshot front; // owned by reader
+
+	public SnapshotBuffer(){
+		back = new WorldSnapshot();
+		middle = new AtomicReference<WorldSnapshot>(new WorldSnapshot());
+		front = new WorldSnapshot();
+	}
+
+	/**
+	 * (writer thread only) capture the environment's current state and make it available to the reader
+	 */
+	public void publish(Environment env){
+		back.capture(env);
+		back = middle.getAndSet(back);
+	}
+
+	/**
+	 * (reader thread only) get the most recently published snapshot. The returned snapshot remains
+	 * valid and unchanged until the next call to latest().
+	 */
+	public WorldSnapshot latest(){
+		// only middle can be newer than front, and only the writer can make it newer still, so
+		// the swap never hands the reader something older than what it already had
+		if(middle.get().getTick() > front.getTick())
+			front = middle.getAndSet(front);
+		return front;
+	}
+}
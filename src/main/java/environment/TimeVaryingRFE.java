@@ -10,13 +10,16 @@ import environment.generators.IGenerator;
 public class TimeVaryingRFE extends RandomFoodEnvironment {
 
 	private Random seed_generator;
-	private IGenerator next_generator;
+	private IGenerator next_generator, next_food_field;
 	private long tick_period = Config.instance.getLong("FADE_PERIOD");
+	/** number of swaps so far (copied into each WorldSnapshot so the renderer knows when to re-upload terrain) */
+	private int generation = 0;
 	
 	public TimeVaryingRFE(double energy_per_unit_food, long seed) {
 		super(energy_per_unit_food, seed);
 		seed_generator = new Random(seed); // used exclusively for generating next perlin seed
 		next_generator = createGenerator(seed_generator.nextLong());
+		next_food_field = createFoodField(next_generator);
 	}
 	
 	@Override
@@ -30,7 +33,10 @@ public class TimeVaryingRFE extends RandomFoodEnvironment {
 
 	private void swap_generators(){
 		this.generator = next_generator;
+		this.food_field = next_food_field;
 		this.next_generator = createGenerator(seed_generator.nextLong());
+		this.next_food_field = createFoodField(next_generator);
+		generation++;
 		System.out.println("swapped");
 	}
 	
@@ -39,16 +45,22 @@ public class TimeVaryingRFE extends RandomFoodEnvironment {
 	}
 	
 	@Override
-	protected void feed(AbstractOrganism o){
-		double food1 = this.generator.terrainValue(o.getX(), o.getY())*food_energy;
-		double food2 = this.next_generator.terrainValue(o.getX(), o.getY())*food_energy;
+	protected void feed(AbstractOrganism o, int numberNearby){
+		double food1 = this.food_field.terrainValue(o.getX(), o.getY())*food_energy;
+		double food2 = this.next_food_field.terrainValue(o.getX(), o.getY())*food_energy;
 		double fade = getFade();
 		double food = food1 * (1.0-fade) + food2 * fade;
-		int numberNearby = grid.getInDisk(o.getX(), o.getY(), FOOD_RADIUS).size();
 		o.feed(food/numberNearby);
 	}
 
 	public IGenerator getNextGenerator() {
 		return next_generator;
 	}
+	
+	/**
+	 * @return a number that changes each time the current and next generators are swapped out
+	 */
+	public int getGeneration() {
+		return generation;
+	}
 }
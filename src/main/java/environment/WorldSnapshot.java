@@ -0,0 +1,238 @@
+package environment;
+
+import java.util.List;
+
+import utils.grid.Grid;
+import environment.generators.IGenerator;
+import bio.organisms.AbstractOrganism;
+import bio.organisms.SimpleCircleOrganism;
+
+/**
+ * A flat, array-based copy of the renderable state of every organism at the end of a tick.
+ *
+ * Snapshots are filled by the simulation thread and handed to the render thread through a
+ * SnapshotBuffer. Once published, a snapshot is never written to again until the reader has
+ * handed it back, so the reader can treat it as immutable.
+ *
+ * Organisms are stored grouped by the grid chunk they were in, and each group keeps the bounding
+ * box of its organisms, so readers looking at a small region can skip whole chunks.
+ *
+ * @author wrongu
+ *
+ */
+public class WorldSnapshot {
+
+	private static final int INITIAL_CAPACITY = 64;
+
+	private long tick;
+	private float fade;
+	// the terrain the fade is between, so readers never pair one tick's fade with another's terrain
+	private IGenerator generator, next_generator;
+	private int generation, generator_version, next_generator_version;
+	private int count;
+	private float[] x, y, heading, speed, energy, attack;
+	
+	private int chunk_count;
+	/** organisms of chunk c are at indices chunk_start[c] to chunk_start[c+1]-1 */
+	private int[] chunk_start;
+	/** bounding box of each chunk's organisms: min x, min y, max x, max y */
+	private float[] chunk_bounds;
+	/** grid coordinates of each chunk, and the total energy of its organisms */
+	private int[] chunk_gx, chunk_gy;
+	private float[] chunk_energy;
+
+	WorldSnapshot(){
+		tick = -1;
+		fade = 0f;
+		count = 0;
+		allocate(INITIAL_CAPACITY);
+		chunk_count = 0;
+		chunk_start = new int[INITIAL_CAPACITY + 1];
+		chunk_bounds = new float[4 * INITIAL_CAPACITY];
+		chunk_gx = new int[INITIAL_CAPACITY];
+		chunk_gy = new int[INITIAL_CAPACITY];
+		chunk_energy = new float[INITIAL_CAPACITY];
+	}
+
+	private void allocate(int capacity){
+		x = new float[capacity];
+		y = new float[capacity];
+		heading = new float[capacity];
+		speed = new float[capacity];
+		energy = new float[capacity];
+		attack = new float[capacity];
+	}
+
+	private void ensureCapacity(int capacity){
+		if(capacity > x.length){
+			int n = x.length;
+			while(n < capacity) n *= 2;
+			allocate(n);
+		}
+	}
+
+	private void ensureChunkCapacity(int capacity){
+		if(capacity >= chunk_start.length){
+			int n = chunk_start.length;
+			while(n <= capacity) n *= 2;
+			chunk_start = new int[n];
+			chunk_bounds = new float[4 * n];
+			chunk_gx = new int[n];
+			chunk_gy = new int[n];
+			chunk_energy = new float[n];
+		}
+	}
+
+	/**
+	 * copy the current state of the environment into this snapshot (overwriting whatever was here)
+	 */
+	void capture(Environment env){
+		ensureCapacity(env.getOrganismCount());
+		List<Grid<AbstractOrganism>.Chunk> chunks = env.grid.getChunks();
+		ensureChunkCapacity(chunks.size());
+		int i = 0, c = 0;
+		for(Grid<AbstractOrganism>.Chunk chunk : chunks){
+			chunk_start[c] = i;
+			float x0 = Float.POSITIVE_INFINITY, y0 = Float.POSITIVE_INFINITY;
+			float x1 = Float.NEGATIVE_INFINITY, y1 = Float.NEGATIVE_INFINITY;
+			float e = 0f;
+			for(AbstractOrganism o : chunk){
+				put(i, o);
+				e += energy[i];
+				x0 = Math.min(x0, x[i]);
+				y0 = Math.min(y0, y[i]);
+				x1 = Math.max(x1, x[i]);
+				y1 = Math.max(y1, y[i]);
+				i++;
+			}
+			chunk_bounds[4*c] = x0;
+			chunk_bounds[4*c+1] = y0;
+			chunk_bounds[4*c+2] = x1;
+			chunk_bounds[4*c+3] = y1;
+			chunk_gx[c] = chunk.getGridX();
+			chunk_gy[c] = chunk.getGridY();
+			chunk_energy[c] = e;
+			c++;
+		}
+		chunk_start[c] = i;
+		chunk_count = c;
+		count = i;
+		tick = env.getTickNumber();
+		fade = (env instanceof TimeVaryingRFE) ? (float) ((TimeVaryingRFE) env).getFade() : 0f;
+		captureTerrain(env);
+	}
+
+	private void captureTerrain(Environment env){
+		generator = next_generator = null;
+		generation = generator_version = next_generator_version = 0;
+		if(env instanceof TimeVaryingRFE){
+			TimeVaryingRFE rfe = (TimeVaryingRFE) env;
+			generator = rfe.getGenerator();
+			next_generator = rfe.getNextGenerator();
+			generation = rfe.getGeneration();
+		} else if(env instanceof RandomFoodEnvironment){
+			generator = next_generator = ((RandomFoodEnvironment) env).getGenerator();
+		}
+		if(generator != null){
+			generator_version = generator.getVersion();
+			next_generator_version = next_generator.getVersion();
+		}
+	}
+
+	/**
+	 * copy one organism into index i, growing the arrays if needed
+	 */
+	private void put(int i, AbstractOrganism o){
+		if(i == x.length){
+			// more organisms than the grid reported; grow and keep what we have so far
+			float[][] old = {x, y, heading, speed, energy, attack};
+			allocate(2 * i);
+			System.arraycopy(old[0], 0, x, 0, i);
+			System.arraycopy(old[1], 0, y, 0, i);
+			System.arraycopy(old[2], 0, heading, 0, i);
+			System.arraycopy(old[3], 0, speed, 0, i);
+			System.arraycopy(old[4], 0, energy, 0, i);
+			System.arraycopy(old[5], 0, attack, 0, i);
+		}
+		x[i] = (float) o.getX();
+		y[i] = (float) o.getY();
+		energy[i] = (float) o.getEnergy();
+		if(o instanceof SimpleCircleOrganism){
+			SimpleCircleOrganism sco = (SimpleCircleOrganism) o;
+			heading[i] = (float) Math.atan2(sco.getVY(), sco.getVX());
+			speed[i] = (float) sco.getSpeed();
+			attack[i] = (float) sco.getAttackOutput();
+		} else{
+			heading[i] = speed[i] = attack[i] = 0f;
+		}
+	}
+
+	/** the environment's tick number when this snapshot was taken (-1 if it is empty) */
+	public long getTick(){ return tick; }
+
+	/** the TimeVaryingRFE fade value when this snapshot was taken (0 for other environments) */
+	public float getFade(){ return fade; }
+
+	/** the food terrain when this snapshot was taken (null if the environment has none) */
+	public IGenerator getGenerator(){ return generator; }
+
+	/** the terrain being faded towards (the same as getGenerator() if the environment doesn't fade) */
+	public IGenerator getNextGenerator(){ return next_generator; }
+
+	/** the TimeVaryingRFE generation (number of swaps) when this snapshot was taken */
+	public int getGeneration(){ return generation; }
+
+	/** getGenerator().getVersion() when this snapshot was taken */
+	public int getGeneratorVersion(){ return generator_version; }
+
+	/** getNextGenerator().getVersion() when this snapshot was taken */
+	public int getNextGeneratorVersion(){ return next_generator_version; }
+
+	/** number of organisms in this snapshot */
+	public int size(){ return count; }
+
+	public float getX(int i){ return x[i]; }
+
+	public float getY(int i){ return y[i]; }
+
+	/** direction of travel in radians */
+	public float getHeading(int i){ return heading[i]; }
+
+	public float getSpeed(int i){ return speed[i]; }
+
+	public float getEnergy(int i){ return energy[i]; }
+
+	public float getAttackOutput(int i){ return attack[i]; }
+
+	/** number of (nonempty) grid chunks in this snapshot */
+	public int getChunkCount(){ return chunk_count; }
+
+	/** index of the first organism in chunk c */
+	public int getChunkStart(int c){ return chunk_start[c]; }
+
+	/** one past the index of the last organism in chunk c */
+	public int getChunkEnd(int c){ return chunk_start[c+1]; }
+
+	/** grid x coordinate of chunk c (its organisms are in the grid's cell there) */
+	public int getChunkGridX(int c){ return chunk_gx[c]; }
+
+	/** grid y coordinate of chunk c */
+	public int getChunkGridY(int c){ return chunk_gy[c]; }
+
+	/** total energy of the organisms in chunk c */
+	public float getChunkEnergy(int c){ return chunk_energy[c]; }
+
+	/**
+	 * @return true if every organism of chunk c is inside the box [x0,x1]x[y0,y1]
+	 */
+	public boolean chunkInside(int c, float x0, float y0, float x1, float y1){
+		return chunk_bounds[4*c] >= x0 && chunk_bounds[4*c+1] >= y0 && chunk_bounds[4*c+2] <= x1 && chunk_bounds[4*c+3] <= y1;
+	}
+
+	/**
+	 * @return true if no organism of chunk c is inside the box [x0,x1]x[y0,y1]
+	 */
+	public boolean chunkOutside(int c, float x0, float y0, float x1, float y1){
+		return chunk_bounds[4*c] > x1 || chunk_bounds[4*c+1] > y1 || chunk_bounds[4*c+2] < x0 || chunk_bounds[4*c+3] < y0;
+	}
+}
@@ -0,0 +1,173 @@
+package environment.generators;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import utils.grid.CoordsTable;
+
+/**
+ * Wraps another IGenerator with a raster of its values, sampled every 'resolution' world units
+ * and read back with bilinear interpolation. The raster is split into square tiles that are
+ * filled in the first time something looks inside them; when more than 'max_tiles' are held,
+ * one that hasn't been used lately is dropped.
+ *
+ * Values come out slightly smoothed compared to the wrapped generator, but each lookup is a
+ * handful of array reads instead of a full evaluation. Lookups may come from several threads at
+ * once. Since a tile's contents depend only on its position, results don't depend on which
+ * thread filled it or on what has been evicted.
+ *
+ * Lookups that hit a tile take no lock: tiles are published in a direct-mapped array ('slots')
+ * that readers check first. Only a miss there locks, to find or fill the tile and to evict.
+ *
+ * @author wrongu
+ *
+ */
+public class CachedGenerator implements IGenerator {
+
+	private static final int TILE_SHIFT = 6;
+	/** samples along each side of a tile (each tile also stores the first row/column of the next) */
+	public static final int TILE_SIZE = 1 << TILE_SHIFT;
+	private static final int STRIDE = TILE_SIZE + 1;
+
+	private IGenerator source;
+	private double resolution, inv_resolution;
+	private int max_tiles;
+
+	// the rest is guarded by 'this'
+	/** every tile held, by packed tile coordinates */
+	private CoordsTable<Tile> tiles;
+	/** the same tiles, in the order evict() sweeps them; 'hand' is where the next sweep starts */
+	private Tile[] ring;
+	private int held, hand;
+	/** tiles readers can find without locking, at slot(tx, ty). A subset of 'tiles'. */
+	private AtomicReferenceArray<Tile> slots;
+	private int slot_mask;
+
+	private static class Tile {
+		final int tx, ty;
+		final float[] values = new float[STRIDE * STRIDE];
+		/** set by lookups, cleared by evict(); a tile that was used gets a second chance */
+		boolean used;
+
+		Tile(int tx, int ty) {
+			this.tx = tx;
+			this.ty = ty;
+		}
+	}
+
+	/**
+	 * @param source the generator whose values are cached
+	 * @param resolution distance (in world units) between samples
+	 * @param max_tiles how many tiles to keep before evicting
+	 */
+	public CachedGenerator(IGenerator source, double resolution, int max_tiles) {
+		this.source = source;
+		this.resolution = resolution;
+		this.inv_resolution = 1.0 / resolution;
+		this.max_tiles = Math.max(max_tiles, 1);
+		this.tiles = new CoordsTable<Tile>();
+		this.ring = new Tile[this.max_tiles];
+		this.held = 0;
+		this.hand = 0;
+		// at least twice as many slots as tiles, so few tiles share one
+		int n = 1;
+		while(n < 2 * this.max_tiles) n <<= 1;
+		this.slots = new AtomicReferenceArray<Tile>(n);
+		this.slot_mask = n - 1;
+	}
+
+	public IGenerator getSource() {
+		return source;
+	}
+
+	/**
+	 * reseeds the wrapped generator and forgets everything cached from it
+	 */
+	public synchronized void setSeed(long seed) {
+		source.setSeed(seed);
+		tiles.clear();
+		for(int k = 0; k < held; k++)
+			ring[k] = null;
+		held = hand = 0;
+		for(int s = 0; s < slots.length(); s++)
+			slots.set(s, null);
+	}
+
+	public int getVersion() {
+		return source.getVersion();
+	}
+
+	public double terrainValue(double x, double y) {
+		// position in samples
+		double sx = x * inv_resolution;
+		double sy = y * inv_resolution;
+		int ix = (int) Math.floor(sx);
+		int iy = (int) Math.floor(sy);
+		double fx = sx - ix;
+		double fy = sy - iy;
+		// tile holding sample (ix,iy), and the sample's place within it
+		int tx = ix >> TILE_SHIFT, ty = iy >> TILE_SHIFT;
+		int i = (iy - (ty << TILE_SHIFT)) * STRIDE + (ix - (tx << TILE_SHIFT));
+
+		Tile t = slots.get(slot(tx, ty));
+		if(t == null || t.tx != tx || t.ty != ty)
+			t = getTile(tx, ty);
+		// racy but harmless: at worst a tile gets one chance more or less
+		if(!t.used) t.used = true;
+		float[] v = t.values;
+		double bottom = v[i] + fx * (v[i + 1] - v[i]);
+		double top = v[i + STRIDE] + fx * (v[i + STRIDE + 1] - v[i + STRIDE]);
+		return bottom + fy * (top - bottom);
+	}
+
+	private int slot(int tx, int ty) {
+		int h = tx * 0x9E3779B1 + ty * 0x85EBCA6B;
+		return (h ^ (h >>> 16)) & slot_mask;
+	}
+
+	/**
+	 * (on a miss in 'slots') find or fill the tile and publish it in its slot
+	 */
+	private synchronized Tile getTile(int tx, int ty) {
+		long key = CoordsTable.pack(tx, ty);
+		Tile t = tiles.get(key);
+		if(t == null){
+			// always a fresh tile: another thread may still be reading the evicted one
+			t = new Tile(tx, ty);
+			fill(t);
+			if(held < max_tiles) ring[held++] = t;
+			else ring[evict()] = t;
+			tiles.put(key, t);
+		}
+		slots.set(slot(tx, ty), t);
+		return t;
+	}
+
+	/**
+	 * forget one tile: the next one after the hand that hasn't been used since the hand last
+	 * passed it. Used tiles just lose their flag (the "clock" approximation of least recently
+	 * used), so this is amortized O(1).
+	 * @return the ring position freed
+	 */
+	private int evict() {
+		// bounded, in case lookups keep marking tiles as used while this runs
+		for(int chances = held; ; chances--){
+			int k = hand;
+			Tile t = ring[k];
+			hand = (hand + 1) % held;
+			if(t.used && chances > 0){
+				t.used = false;
+			} else{
+				tiles.remove(CoordsTable.pack(t.tx, t.ty));
+				slots.compareAndSet(slot(t.tx, t.ty), t, null);
+				return k;
+			}
+		}
+	}
+
+	private void fill(Tile t) {
+		int x0 = t.tx * TILE_SIZE, y0 = t.ty * TILE_SIZE;
+		for(int j = 0; j < STRIDE; j++)
+			for(int i = 0; i < STRIDE; i++)
+				t.values[j * STRIDE + i] = (float) source.terrainValue((x0 + i) * resolution, (y0 + j) * resolution);
+	}
+}
@@ -6,4 +6,10 @@ public interface IGenerator {
 	
 	public double terrainValue(double x, double y);
 	
+	/**
+	 * @return a number that changes whenever terrainValue() may start giving different results
+	 * (e.g. after setSeed()), so copies of the terrain know when to refresh
+	 */
+	public int getVersion();
+	
 }
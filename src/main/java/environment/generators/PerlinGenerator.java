@@ -12,6 +12,8 @@ public class PerlinGenerator implements IGenerator {
 
 	/** a table with some power-of-two (usually 256) entries used as a sort random index lookup */
 	private int[] random_table;
+	/** bumped every time the table is reshuffled */
+	private volatile int version;
 	/** layers of generation, each half resolution of the last */
 	private int octaves;
 	/** how large the largest grid unit is. The 2nd octave is half as large, 3rd is 1/4 as large, etc.. */
@@ -59,6 +61,11 @@ public class PerlinGenerator implements IGenerator {
 	
 	public void setSeed(long s) {
 		this.shuffle_table(s);
+		version++;
+	}
+	
+	public int getVersion() {
+		return version;
 	}
 
 	private static double interp(double a, double b, double bias){
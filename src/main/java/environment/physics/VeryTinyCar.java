@@ -8,10 +8,10 @@ public class VeryTinyCar extends PhysicalObject {
 	
 	public static final double DEFAULT_MASS = Config.instance.getDouble("VTC_MASS");
 	
-	private static final double FORWARD_RESISTANCE = Config.instance.getDouble("VTC_FWD_RESIST");
-	private static final double REVERSE_RESISTANCE = Config.instance.getDouble("VTC_REV_RESIST");
+	static final double FORWARD_RESISTANCE = Config.instance.getDouble("VTC_FWD_RESIST");
+	static final double REVERSE_RESISTANCE = Config.instance.getDouble("VTC_REV_RESIST");
 //	private static final double TURN_RESTORATION = 10;
-	private static final double ADDFORCE_BUFFER = 0.00000000000001;// Prevents divide by zero errors in addForce. Must by > 0.
+	static final double ADDFORCE_BUFFER = 0.00000000000001;// Prevents divide by zero errors in addForce. Must by > 0.
 	
 //	private Vector2d pos;
 	private Vector2d dir;
@@ -21,6 +21,9 @@ public class VeryTinyCar extends PhysicalObject {
 	private double last_turn; // tracks last frame's turn.
 	private double mass;  // mass used in physics updates (f=ma)
 	private double radius; // treated as a circle for collions
+	// collision response staged by collide() and applied at the start of the next update()
+	private double col_x, col_y, col_vx, col_vy;
+	private boolean collided;
 	
 	public VeryTinyCar(double mass, double radius, double x, double y, double random) {
 		super(x, y);
@@ -34,6 +37,21 @@ public class VeryTinyCar extends PhysicalObject {
 		last_turn = 0;
 	}
 	
+	/**
+	 * copy of a car from a VeryTinyCarArray
+	 */
+	VeryTinyCar(double mass, double radius, double x, double y, double dir_x, double dir_y,
+			double speed, double acc, double turn, double last_turn) {
+		super(x, y);
+		this.dir = new Vector2d(dir_x, dir_y);
+		this.mass = mass;
+		this.radius = radius;
+		this.speed = speed;
+		this.acc = acc;
+		this.turn = turn;
+		this.last_turn = last_turn;
+	}
+	
 	// Effectors
 	public void addTurn(double dTurn) {
 		this.turn += dTurn;
@@ -84,6 +102,8 @@ public class VeryTinyCar extends PhysicalObject {
 	}
 
 	public void update(double dt) {
+		if(collided) applyCollisions();
+		
 		// Set last_turn
 		last_turn = turn;
 		
@@ -108,44 +128,53 @@ public class VeryTinyCar extends PhysicalObject {
 		speed -= (speed > 0) ? FORWARD_RESISTANCE*speed*dt : REVERSE_RESISTANCE*speed*dt;
 	}
 
+	/**
+	 * Stage the response to a collision with another car (if they overlap) on both cars. Nothing
+	 * moves until each car's next update(), and the response is computed from the cars' current
+	 * state, so a cluster of colliding cars behaves the same whatever order its pairs come in.
+	 */
 	public void collide(VeryTinyCar other) {
 		double dx = other.getPosX() - this.getPosX();
 		double dy = other.getPosY() - this.getPosY();
 		double dist2 = (dx*dx + dy*dy);
 		double overlap_dist2 = (other.radius+this.radius) * (other.radius+this.radius);
 		if(dist2 < overlap_dist2){
-			// TODO stage updates for the next frame so that behavior of a large cluster of colliding cars
-			// doesn't depend on the order of updates
-			// normalize collision direction
+			// normalize collision direction (pointing from this car to the other)
 			double dist = Math.sqrt(dist2);
 			dx = dist > 0.0 ? dx / dist : 1.;
 			dy = dist > 0.0 ? dy / dist : 0.;
 			double ratio = this.mass / (other.mass + this.mass);
 			double ratio_inv = 1.0 - ratio;
 			double overlap = Math.sqrt(overlap_dist2) - dist;
-			// set positions such that they are no longer colliding
-			pos.x += overlap * dx * ratio_inv;
-			pos.y += overlap * dy * ratio_inv;
-			other.pos.x -= overlap * dx * ratio;
-			other.pos.y -= overlap * dy * ratio; 
-			// compute the effect of the collision on cars' velocities
-			double vx = dir.x*speed;
-			double vy = dir.y*speed;
-			double other_vx = other.dir.x*other.speed;
-			double other_vy = other.dir.y*other.speed;
-			double dvx = vx - other_vx;
-			double dvy = vy - other_vy;
+			// move apart such that they are no longer colliding
+			this.col_x -= overlap * dx * ratio_inv;
+			this.col_y -= overlap * dy * ratio_inv;
+			other.col_x += overlap * dx * ratio;
+			other.col_y += overlap * dy * ratio;
+			// compute the effect of the collision on cars' velocities (conservation of momentum)
+			double dvx = dir.x*speed - other.dir.x*other.speed;
+			double dvy = dir.y*speed - other.dir.y*other.speed;
 			double projdvx = (dvx*dx + dvy*dy)*dx;
 			double projdvy = (dvx*dx + dvy*dy)*dy;
-			// set velocities according to conservation of momentum
-			this.dir.x = vx - projdvx * ratio_inv;
-			this.dir.y = vy -  projdvy * ratio_inv;
-			other.dir.x = other_vx +  projdvx * ratio;
-			other.dir.y = other_vy +  projdvy * ratio;
-			this.speed = this.dir.length();
-			this.dir.normalize();
-			other.speed = other.dir.length();
-			other.dir.normalize();
+			this.col_vx -= projdvx * ratio_inv;
+			this.col_vy -= projdvy * ratio_inv;
+			other.col_vx += projdvx * ratio;
+			other.col_vy += projdvy * ratio;
+			this.collided = other.collided = true;
+		}
+	}
+	
+	private void applyCollisions() {
+		pos.x += col_x;
+		pos.y += col_y;
+		double vx = dir.x*speed + col_vx;
+		double vy = dir.y*speed + col_vy;
+		speed = Math.sqrt(vx*vx + vy*vy);
+		if(speed > 0.0){
+			double norm = 1.0/speed;
+			dir.set(vx*norm, vy*norm);
 		}
+		col_x = col_y = col_vx = col_vy = 0.0;
+		collided = false;
 	}
 }
@@ -0,0 +1,276 @@
+package environment.physics;
+
+/**
+ * Many VeryTinyCars stored as parallel arrays of primitives instead of one object each, so that
+ * updating a whole population walks memory in order. Cars are referred to by index. The physics
+ * is exactly that of VeryTinyCar; all cars in one array share a mass and radius.
+ *
+ * @author wrongu
+ *
+ */
+public class VeryTinyCarArray {
+
+	private double mass, radius;
+	private int size;
+	private double[] x, y, dir_x, dir_y, speed, acc, turn, last_turn;
+	/** collision response staged by collide() and applied at the start of the next update() */
+	private double[] col_x, col_y, col_vx, col_vy;
+	private boolean[] collided;
+	/** temporary space for permute() */
+	private double[] scratch;
+
+	public VeryTinyCarArray(double mass, double radius, int capacity) {
+		this.mass = mass;
+		this.radius = radius;
+		this.size = 0;
+		allocate(Math.max(capacity, 1));
+	}
+
+	private void allocate(int capacity) {
+		x = grow(x, capacity);
+		y = grow(y, capacity);
+		dir_x = grow(dir_x, capacity);
+		dir_y = grow(dir_y, capacity);
+		speed = grow(speed, capacity);
+		acc = grow(acc, capacity);
+		turn = grow(turn, capacity);
+		last_turn = grow(last_turn, capacity);
+		col_x = grow(col_x, capacity);
+		col_y = grow(col_y, capacity);
+		col_vx = grow(col_vx, capacity);
+		col_vy = grow(col_vy, capacity);
+		boolean[] new_collided = new boolean[capacity];
+		if(collided != null) System.arraycopy(collided, 0, new_collided, 0, size);
+		collided = new_collided;
+		scratch = new double[capacity];
+	}
+
+	private double[] grow(double[] old, int capacity) {
+		double[] arr = new double[capacity];
+		if(old != null) System.arraycopy(old, 0, arr, 0, size);
+		return arr;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int capacity() {
+		return x.length;
+	}
+
+	/**
+	 * add a car at rest (same as the VeryTinyCar constructor)
+	 * @param random in [0,1), chooses the initial direction
+	 * @return the new car's index
+	 */
+	public int add(double x, double y, double random) {
+		if(size == this.x.length) allocate(2 * size);
+		int i = size++;
+		random *= 2*Math.PI;
+		this.x[i] = x;
+		this.y[i] = y;
+		dir_x[i] = Math.cos(random);
+		dir_y[i] = Math.sin(random);
+		speed[i] = 0;
+		acc[i] = 0;
+		turn[i] = 0;
+		last_turn[i] = 0;
+		col_x[i] = col_y[i] = col_vx[i] = col_vy[i] = 0;
+		collided[i] = false;
+		return i;
+	}
+
+	/**
+	 * remove car i by moving the last car into its place.
+	 * @return the old index of the car that now lives at i (or -1 if i was the last car)
+	 */
+	public int removeSwap(int i) {
+		int last = --size;
+		if(i == last) return -1;
+		x[i] = x[last];
+		y[i] = y[last];
+		dir_x[i] = dir_x[last];
+		dir_y[i] = dir_y[last];
+		speed[i] = speed[last];
+		acc[i] = acc[last];
+		turn[i] = turn[last];
+		last_turn[i] = last_turn[last];
+		col_x[i] = col_x[last];
+		col_y[i] = col_y[last];
+		col_vx[i] = col_vx[last];
+		col_vy[i] = col_vy[last];
+		collided[i] = collided[last];
+		return last;
+	}
+
+	/**
+	 * reorder the cars so that the car at index k afterwards is the one that was at order[k]
+	 * @param order a permutation of 0..size()-1
+	 */
+	public void permute(int[] order) {
+		permute(x, order);
+		permute(y, order);
+		permute(dir_x, order);
+		permute(dir_y, order);
+		permute(speed, order);
+		permute(acc, order);
+		permute(turn, order);
+		permute(last_turn, order);
+		permute(col_x, order);
+		permute(col_y, order);
+		permute(col_vx, order);
+		permute(col_vy, order);
+		for(int k = 0; k < size; k++)
+			scratch[k] = collided[order[k]] ? 1.0 : 0.0;
+		for(int k = 0; k < size; k++)
+			collided[k] = scratch[k] != 0.0;
+	}
+
+	private void permute(double[] arr, int[] order) {
+		for(int k = 0; k < size; k++)
+			scratch[k] = arr[order[k]];
+		System.arraycopy(scratch, 0, arr, 0, size);
+	}
+
+	/**
+	 * @return a standalone VeryTinyCar with the same state as car i
+	 */
+	public VeryTinyCar toCar(int i) {
+		return new VeryTinyCar(mass, radius, x[i], y[i], dir_x[i], dir_y[i], speed[i], acc[i], turn[i], last_turn[i]);
+	}
+
+	// Effectors
+	public void addTurn(int i, double dTurn) {
+		turn[i] += dTurn;
+	}
+
+	public void addThrust(int i, double thrust) {
+		speed[i] += thrust/mass;
+	}
+
+	public void addForce(int i, double fx, double fy) {
+		double tanAcc = (fx*dir_x[i] + fy*dir_y[i])/mass;
+		double nrmAcc = (fx*dir_y[i] - fy*dir_x[i])/mass;
+
+		acc[i] += tanAcc;
+		turn[i] -= nrmAcc/(speed[i]*speed[i] + VeryTinyCar.ADDFORCE_BUFFER);
+	}
+
+	public double getPosX(int i) {
+		return x[i];
+	}
+
+	public double getPosY(int i) {
+		return y[i];
+	}
+
+	public double getVelX(int i) {
+		return speed[i]*dir_x[i];
+	}
+
+	public double getVelY(int i) {
+		return speed[i]*dir_y[i];
+	}
+
+	public double getDirX(int i) {
+		return dir_x[i];
+	}
+
+	public double getDirY(int i) {
+		return dir_y[i];
+	}
+
+	public double getSpeed(int i) {
+		return speed[i];
+	}
+
+	public double getTurn(int i) {
+		return last_turn[i];
+	}
+
+	/**
+	 * update cars from (inclusive) to to (exclusive)
+	 */
+	public void update(int from, int to, double dt) {
+		for(int i = from; i < to; i++)
+			update(i, dt);
+	}
+
+	/**
+	 * same as VeryTinyCar.update() for car i
+	 */
+	public void update(int i, double dt) {
+		if(collided[i]) applyCollisions(i);
+
+		last_turn[i] = turn[i];
+
+		speed[i] += acc[i]*dt;
+
+		// update direction
+		double distance = speed[i]*dt;
+		double sin = Math.sin(turn[i]*distance);
+		double cos = Math.cos(turn[i]*distance);
+		double dx = cos*dir_x[i] - sin*dir_y[i];
+		double dy = sin*dir_x[i] + cos*dir_y[i];
+		double norm = 1.0/Math.sqrt(dx*dx + dy*dy);
+		dx *= norm;
+		dy *= norm;
+		dir_x[i] = dx;
+		dir_y[i] = dy;
+
+		// update position
+		x[i] += dx*distance;
+		y[i] += dy*distance;
+
+		turn[i] = 0;
+
+		speed[i] -= (speed[i] > 0) ? VeryTinyCar.FORWARD_RESISTANCE*speed[i]*dt : VeryTinyCar.REVERSE_RESISTANCE*speed[i]*dt;
+	}
+
+	/**
+	 * same as VeryTinyCar.collide() between cars i and j (staged until their next update)
+	 */
+	public void collide(int i, int j) {
+		double dx = x[j] - x[i];
+		double dy = y[j] - y[i];
+		double dist2 = (dx*dx + dy*dy);
+		double overlap_dist2 = (radius+radius) * (radius+radius);
+		if(dist2 < overlap_dist2){
+			double dist = Math.sqrt(dist2);
+			dx = dist > 0.0 ? dx / dist : 1.;
+			dy = dist > 0.0 ? dy / dist : 0.;
+			double ratio = mass / (mass + mass);
+			double ratio_inv = 1.0 - ratio;
+			double overlap = Math.sqrt(overlap_dist2) - dist;
+			col_x[i] -= overlap * dx * ratio_inv;
+			col_y[i] -= overlap * dy * ratio_inv;
+			col_x[j] += overlap * dx * ratio;
+			col_y[j] += overlap * dy * ratio;
+			double dvx = dir_x[i]*speed[i] - dir_x[j]*speed[j];
+			double dvy = dir_y[i]*speed[i] - dir_y[j]*speed[j];
+			double projdvx = (dvx*dx + dvy*dy)*dx;
+			double projdvy = (dvx*dx + dvy*dy)*dy;
+			col_vx[i] -= projdvx * ratio_inv;
+			col_vy[i] -= projdvy * ratio_inv;
+			col_vx[j] += projdvx * ratio;
+			col_vy[j] += projdvy * ratio;
+			collided[i] = collided[j] = true;
+		}
+	}
+
+	private void applyCollisions(int i) {
+		x[i] += col_x[i];
+		y[i] += col_y[i];
+		double vx = dir_x[i]*speed[i] + col_vx[i];
+		double vy = dir_y[i]*speed[i] + col_vy[i];
+		speed[i] = Math.sqrt(vx*vx + vy*vy);
+		if(speed[i] > 0.0){
+			double norm = 1.0/speed[i];
+			dir_x[i] = vx*norm;
+			dir_y[i] = vy*norm;
+		}
+		col_x[i] = col_y[i] = col_vx[i] = col_vy[i] = 0.0;
+		collided[i] = false;
+	}
+}
@@ -0,0 +1,80 @@
+package graphics;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import applet.Config;
+
+/**
+ * Renders an IDrawable into an offscreen image with Java2D and saves it as a PNG, so runs without
+ * a display (or a GPU) can still be looked at afterwards. Frames are named by tick number
+ * (frame_00001000.png, ...) and can be stitched into a video with any external tool.
+ *
+ * Drawing happens on the calling thread, so call dump() between ticks.
+ *
+ * @author wrongu
+ *
+ */
+public class FrameDumper {
+
+	public static final Color BACKGROUND_COLOR = Color.BLACK;
+
+	private IDrawable render;
+	private File dir;
+	private BufferedImage image;
+	/** pixels per world unit */
+	private float zoom;
+	/** world coordinates at the center of the frame */
+	private float center_x, center_y;
+
+	public FrameDumper(IDrawable d, File dir, int width, int height, float zoom, float center_x, float center_y){
+		this.render = d;
+		this.dir = dir;
+		this.image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		this.zoom = zoom;
+		this.center_x = center_x;
+		this.center_y = center_y;
+	}
+
+	public static FrameDumper fromConfig(IDrawable d){
+		return new FrameDumper(d,
+				new File(Config.instance.getString("FRAME_DUMP_DIR")),
+				Config.instance.getInt("FRAME_DUMP_WIDTH"),
+				Config.instance.getInt("FRAME_DUMP_HEIGHT"),
+				Config.instance.getFloat("FRAME_DUMP_ZOOM"),
+				Config.instance.getFloat("FRAME_DUMP_CENTER_X"),
+				Config.instance.getFloat("FRAME_DUMP_CENTER_Y"));
+	}
+
+	/**
+	 * draw the current state and write it to dir/frame_[tick].png
+	 * @return the file written
+	 */
+	public File dump(long tick) throws IOException {
+		int width = image.getWidth(), height = image.getHeight();
+		Graphics2D g = image.createGraphics();
+		try{
+			g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+			g.setColor(BACKGROUND_COLOR);
+			g.fillRect(0, 0, width, height);
+			// IDrawables map world (x,y) to pixel ((x + shiftx) * scale, (y + shifty) * scale)
+			float shiftx = 0.5f * width / zoom - center_x;
+			float shifty = 0.5f * height / zoom - center_y;
+			render.draw(g, shiftx, shifty, zoom, zoom);
+		} finally{
+			g.dispose();
+		}
+
+		if(!dir.isDirectory() && !dir.mkdirs())
+			throw new IOException("could not create directory " + dir);
+		File out = new File(dir, String.format("frame_%08d.png", tick));
+		ImageIO.write(image, "png", out);
+		return out;
+	}
+}
@@ -40,6 +40,13 @@ public class Camera {
 		zoom_target = (float) new_zoom;
 	}
 	
+	/**
+	 * @return current pixels per world-space distance
+	 */
+	public float getZoom(){
+		return zoom;
+	}
+	
 	/**
 	 * smoothly animate towards target position and zoom
 	 */
@@ -1,11 +1,9 @@
 package graphics.opengl;
 
 import java.awt.Canvas;
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
-import java.util.LinkedList;
+import java.util.Arrays;
 
 import org.lwjgl.LWJGLException;
 import org.lwjgl.opengl.ContextAttribs;
@@ -16,25 +14,29 @@ import org.lwjgl.util.glu.GLU;
 import org.lwjgl.util.vector.Matrix4f;
 import org.lwjgl.BufferUtils;
 
-import bio.organisms.AbstractOrganism;
 import bio.organisms.SimpleCircleOrganism;
 
 import applet.Config;
 
 import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL12.*;
 import static org.lwjgl.opengl.GL13.*;
 import static org.lwjgl.opengl.GL15.*;
 import static org.lwjgl.opengl.GL20.*;
 import static org.lwjgl.opengl.GL30.*;
 import static org.lwjgl.opengl.GL31.*;
+import static org.lwjgl.opengl.GL33.*;
 
 import environment.Environment;
+import environment.SnapshotBuffer;
 import environment.TimeVaryingRFE;
+import environment.WorldSnapshot;
 import environment.generators.PerlinGenerator;
 
 public class RenderGL {
 
 	private Environment theEnvironment;
+	private SnapshotBuffer snapshots;
 	private Camera camera;
 	private int width, height;
 	private boolean[] keyboard;
@@ -43,26 +45,60 @@ public class RenderGL {
 	
 	// allocate once
 	private FloatBuffer mat4x4;
+	/** per-organism attributes of the visible organisms (INSTANCE_FLOATS each), grown as needed */
+	private FloatBuffer instance_data;
+	/** indices into the current snapshot of organisms that are on screen */
+	private int[] visible;
+	// snapshot tick and camera bounds that 'visible' and instance_vbo were last filled for, so a
+	// paused simulation under a still camera is neither culled nor uploaded again
+	private long visible_tick = Long.MIN_VALUE;
+	private float[] visible_bounds;
+	private int n_visible;
 	
 	// static vertex buffers (VBOs/meshes)
 	private int screenquad_vbo, circle_vbo, kite_vbo, spike_vbo;
 	// Vertex Array Objects (VAOs)
-	private int screenquad_vao, circle_vao, kite_vao, spike_vao;
-	// uniform buffers (UBOs)
-	private int organism_instance_ubo;
-	private int ubo_circle_stride = 12, ubo_scale_anim_stride = 16, ubo_binding = 0;
+	private int screenquad_vao, circle_vao, kite_vao, spike_vao, point_vao;
+	// per-instance vertex buffer, refilled each frame: x, y, heading, speed, energy, attack output
+	// for each visible organism. every organism layer is drawn from it with one instanced call.
+	private int instance_vbo;
+	private static final int INSTANCE_FLOATS = 6;
+	private static final int INSTANCE_STRIDE = 4 * INSTANCE_FLOATS;
+	private static final int OFFSET_X = 0, OFFSET_HEADING = 8, OFFSET_SPEED = 12, OFFSET_ENERGY = 16, OFFSET_ATTACK = 20;
 	
 	// Shaders and programs
-	private Program pPerlin, pOrgoCircle, pOrgoColorAnimate;
+	private Program pPerlin, pOrgoCircle, pOrgoColorAnimate, pOrgoPoint, pHeatmap;
 	private int perlin_lookup_tex, perlin_next_lookup_tex;
+	// what the perlin lookup textures currently hold: environment generation and generator versions
+	private int perlin_generation = -1, perlin_version = -1, perlin_next_version = -1;
+	private FloatBuffer perlin_table = BufferUtils.createFloatBuffer(PerlinGenerator.TABLE_SIZE);
+	
+	// level of detail: full meshes, points below LOD_POINT_ZOOM, and below LOD_HEATMAP_ZOOM a texture
+	// with one texel per grid chunk (organism count and average energy)
+	private final float LOD_POINT_ZOOM = Config.instance.getFloat("LOD_POINT_ZOOM");
+	private final float LOD_HEATMAP_ZOOM = Config.instance.getFloat("LOD_HEATMAP_ZOOM");
+	/** one heatmap cell per grid chunk */
+	private final int HEATMAP_CELL = Environment.GRID_SIZE;
+	/** most texels along either side of the heatmap */
+	private static final int HEATMAP_MAX_CELLS = 2048;
+	/** organisms per cell at which the heatmap is about 2/3 opaque */
+	private static final float HEATMAP_SATURATION = 4f;
+	private int heatmap_tex;
+	/** count and total energy of each cell (cols*rows pairs), and the same as a buffer for upload */
+	private float[] heat;
+	private FloatBuffer heat_data;
+	// what the heatmap texture currently holds: snapshot tick, first cell and size in cells
+	private long heat_tick = -1;
+	private int heat_x0, heat_y0, heat_cols, heat_rows;
 	
 	// other constants
 	private final int CIRCLE_DIVISIONS = Config.instance.getInt("CIRCLE_SUBDIVISIONS");
 	private final int ATTACK_SPIKES = Config.instance.getInt("ATTACK_SPIKES");
 
-	public RenderGL(Canvas canvas, Environment env, int w, int h){
+	public RenderGL(Canvas canvas, Environment env, SnapshotBuffer snapshots, int w, int h){
 		// set up panel with respect to the evolution app
 		theEnvironment = env;
+		this.snapshots = snapshots;
 		width = w;
 		height = h;
 		camera_sensitivity_pan = Config.instance.getFloat("CAMERA_SENSETIVITY_PAN");
@@ -72,7 +108,7 @@ public class RenderGL {
 			Display.setParent(canvas);
 			Display.setVSyncEnabled(true);
 			Display.setTitle("Evolution Sim");
-			ContextAttribs contextAtrributes = new ContextAttribs(3, 2).withForwardCompatible(true).withProfileCore(true);
+			ContextAttribs contextAtrributes = new ContextAttribs(3, 3).withForwardCompatible(true).withProfileCore(true);
 			PixelFormat pf = new PixelFormat();
 			Display.create(pf, contextAtrributes);
 			exitOnGLError("context setup");
@@ -84,12 +120,15 @@ public class RenderGL {
 		// initialize opengl
 		camera = new Camera();
 		mat4x4 = BufferUtils.createFloatBuffer(16);
+		instance_data = BufferUtils.createFloatBuffer(256 * INSTANCE_FLOATS);
+		visible = new int[256];
 		initGL();
 	}
 
 	public synchronized void redraw(){
 		clearAll();
 		camera.ease();
+		WorldSnapshot world = snapshots.latest();
 		
 		// in case screen size changed
 		width = Display.getWidth();
@@ -103,8 +142,8 @@ public class RenderGL {
 			camera.inverse_projection(width, height).store(mat4x4);
 			mat4x4.flip();
 			pPerlin.setUniformMat4("inverse_projection", mat4x4);
-			pPerlin.setUniformf("fade", (float) ((TimeVaryingRFE) theEnvironment).getFade());
-			updateTexImages();
+			pPerlin.setUniformf("fade", world.getFade());
+			updateTexImages(world);
 			glActiveTexture(GL_TEXTURE0);
 			glBindTexture(GL_TEXTURE_1D, perlin_lookup_tex);
 			glActiveTexture(GL_TEXTURE1);
@@ -117,53 +156,51 @@ public class RenderGL {
 		camera.projection(width, height).store(mat4x4);
 		mat4x4.flip();
 		
-		// get all organisms to render (all that are within the camera's bounding box)
-		LinkedList<AbstractOrganism> onscreen_organisms = theEnvironment.getInBox(camera.getWorldBoundsBuffer(width, height, (float) SimpleCircleOrganism.DEFAULT_RANGE)); 
+		// pick the level of detail. the snapshot won't change underneath us while drawing.
+		float zoom = camera.getZoom();
+		if(zoom < LOD_HEATMAP_ZOOM)
+			drawHeatmap(world);
+		else{
+			// find all organisms to render (all that are within the camera's bounding box) in the
+			// latest completed tick, unless neither has changed since the last frame
+			float[] bounds = camera.getWorldBoundsBuffer(width, height, (float) SimpleCircleOrganism.DEFAULT_RANGE);
+			if(world.getTick() != visible_tick || !Arrays.equals(bounds, visible_bounds)){
+				n_visible = cullToCamera(world, bounds);
+				uploadInstances(world, n_visible);
+				visible_tick = world.getTick();
+				visible_bounds = bounds;
+			}
+			if(zoom < LOD_POINT_ZOOM)
+				drawPoints(n_visible);
+			else
+				drawOrganisms(n_visible);
+		}
+		glBindVertexArray(0);
+		// update the display (i.e. swap buffers, etc)
+		Display.update();
+	}
 	
-		// draw kites
+	/**
+	 * draw the first n uploaded instances with full meshes
+	 */
+	private void drawOrganisms(int n_visible){
+		// draw kites (stretched by speed)
 		pOrgoColorAnimate.use();
 		{
 			pOrgoColorAnimate.setUniformf("rgb", 0.2f, 0.2f, 0.9f);
 			glBindVertexArray(kite_vao);
 			pOrgoColorAnimate.setUniformMat4("projection", mat4x4);
-//			// populate ubo with organism instance values
-			glBindBuffer(GL_UNIFORM_BUFFER, organism_instance_ubo);
-			FloatBuffer instance_data = ByteBuffer.allocateDirect(ubo_scale_anim_stride).order(ByteOrder.nativeOrder()).asFloatBuffer();
-			for(AbstractOrganism o : onscreen_organisms){
-				SimpleCircleOrganism sco = (SimpleCircleOrganism) o;
-				float dir = (float) Math.atan2(sco.getVY(), sco.getVX());
-				instance_data.put((float) o.getX());
-				instance_data.put((float) o.getY());
-				instance_data.put(dir);
-				instance_data.put((float) sco.getSpeed());
-				instance_data.flip();
-				glBufferSubData(GL_UNIFORM_BUFFER, 0, instance_data);
-				glDrawArrays(GL_TRIANGLES, 0, CIRCLE_DIVISIONS);
-			}
+			glDrawArraysInstanced(GL_TRIANGLES, 0, 6, n_visible);
 		}
 		pOrgoColorAnimate.unuse();
 		
-		// draw spikes
+		// draw spikes (stretched by attack output)
 		pOrgoColorAnimate.use();
 		{
 			pOrgoColorAnimate.setUniformf("rgb", 1f, 1f, 0f);
 			glBindVertexArray(spike_vao);
 			pOrgoColorAnimate.setUniformMat4("projection", mat4x4);
-//			// populate ubo with organism instance values
-			glBindBuffer(GL_UNIFORM_BUFFER, organism_instance_ubo);
-			FloatBuffer instance_data = ByteBuffer.allocateDirect(ubo_scale_anim_stride).order(ByteOrder.nativeOrder()).asFloatBuffer();
-			for(AbstractOrganism o : onscreen_organisms){
-				SimpleCircleOrganism sco = (SimpleCircleOrganism) o;
-				float dir = (float) Math.atan2(sco.getVY(), sco.getVX());
-				instance_data.put((float) o.getX());
-				instance_data.put((float) o.getY());
-//				instance_data.put(0f);
-				instance_data.put(dir);
-				instance_data.put((float) ((SimpleCircleOrganism)o).getAttackOutput());
-				instance_data.flip();
-				glBufferSubData(GL_UNIFORM_BUFFER, 0, instance_data);
-				glDrawArrays(GL_LINES, 0, 2*ATTACK_SPIKES);
-			}
+			glDrawArraysInstanced(GL_LINES, 0, 2*ATTACK_SPIKES, n_visible);
 		}
 		pOrgoColorAnimate.unuse();
 		
@@ -172,21 +209,140 @@ public class RenderGL {
 		{
 			glBindVertexArray(circle_vao);
 			pOrgoCircle.setUniformMat4("projection", mat4x4);
-			// populate ubo with organism instance values
-			glBindBuffer(GL_UNIFORM_BUFFER, organism_instance_ubo);
-			FloatBuffer instance_data = ByteBuffer.allocateDirect(ubo_circle_stride).order(ByteOrder.nativeOrder()).asFloatBuffer();
-			for(AbstractOrganism o : onscreen_organisms){
-				instance_data.put((float) o.getX());
-				instance_data.put((float) o.getY());
-				instance_data.put((float) o.getEnergy());
-				instance_data.flip();
-				glBufferSubData(GL_UNIFORM_BUFFER, 0, instance_data);
-				glDrawArrays(GL_LINE_LOOP, 0, CIRCLE_DIVISIONS);
-			}
+			glDrawArraysInstanced(GL_LINE_LOOP, 0, CIRCLE_DIVISIONS, n_visible);
 		}
 		pOrgoCircle.unuse();
-		// update the display (i.e. swap buffers, etc)
-		Display.update();
+	}
+	
+	/**
+	 * draw the first n uploaded instances as single points colored by energy
+	 */
+	private void drawPoints(int n_visible){
+		pOrgoPoint.use();
+		{
+			glBindVertexArray(point_vao);
+			pOrgoPoint.setUniformMat4("projection", mat4x4);
+			glDrawArrays(GL_POINTS, 0, n_visible);
+		}
+		pOrgoPoint.unuse();
+	}
+	
+	/**
+	 * draw organism density and energy per grid chunk over the whole screen
+	 */
+	private void drawHeatmap(WorldSnapshot world){
+		updateHeatmap(world);
+		pHeatmap.use();
+		{
+			glBindVertexArray(screenquad_vao);
+			camera.inverse_projection(width, height).store(mat4x4);
+			mat4x4.flip();
+			pHeatmap.setUniformMat4("inverse_projection", mat4x4);
+			pHeatmap.setUniformf("heat_origin", heat_x0 * HEATMAP_CELL, heat_y0 * HEATMAP_CELL);
+			pHeatmap.setUniformf("heat_size", heat_cols * HEATMAP_CELL, heat_rows * HEATMAP_CELL);
+			glActiveTexture(GL_TEXTURE0);
+			glBindTexture(GL_TEXTURE_2D, heatmap_tex);
+			glDrawArrays(GL_TRIANGLES, 0, 6);
+		}
+		pHeatmap.unuse();
+	}
+	
+	/**
+	 * sum up the organisms in each cell on screen and upload the result to heatmap_tex (unless it
+	 * already holds this snapshot and view). Cells are the grid's chunks, so this only reads the
+	 * snapshot's per-chunk totals and costs nothing per organism.
+	 */
+	private void updateHeatmap(WorldSnapshot world){
+		float[] bounds = camera.getWorldBounds(width, height);
+		int x0 = (int) Math.floor(bounds[0] / HEATMAP_CELL);
+		int y0 = (int) Math.floor(bounds[1] / HEATMAP_CELL);
+		int cols = Math.min((int) Math.floor(bounds[2] / HEATMAP_CELL) - x0 + 1, HEATMAP_MAX_CELLS);
+		int rows = Math.min((int) Math.floor(bounds[3] / HEATMAP_CELL) - y0 + 1, HEATMAP_MAX_CELLS);
+		if(world.getTick() == heat_tick && x0 == heat_x0 && y0 == heat_y0 && cols == heat_cols && rows == heat_rows)
+			return;
+		heat_tick = world.getTick();
+		heat_x0 = x0;
+		heat_y0 = y0;
+		heat_cols = cols;
+		heat_rows = rows;
+		
+		int cells = cols * rows;
+		if(heat == null || heat.length < 2 * cells){
+			heat = new float[2 * cells];
+			heat_data = BufferUtils.createFloatBuffer(2 * cells);
+		}
+		for(int c=0; c<2*cells; c++)
+			heat[c] = 0f;
+		for(int k=0; k<world.getChunkCount(); k++){
+			int cx = world.getChunkGridX(k) - x0;
+			int cy = world.getChunkGridY(k) - y0;
+			if(cx < 0 || cx >= cols || cy < 0 || cy >= rows) continue;
+			int c = 2 * (cy * cols + cx);
+			heat[c] += world.getChunkEnd(k) - world.getChunkStart(k);
+			heat[c+1] += world.getChunkEnergy(k);
+		}
+		// second channel: average energy
+		for(int c=0; c<2*cells; c+=2)
+			if(heat[c] > 0f) heat[c+1] /= heat[c];
+		
+		heat_data.clear();
+		heat_data.put(heat, 0, 2 * cells);
+		heat_data.flip();
+		glActiveTexture(GL_TEXTURE0);
+		glBindTexture(GL_TEXTURE_2D, heatmap_tex);
+		glTexImage2D(GL_TEXTURE_2D, 0, GL_RG32F, cols, rows, 0, GL_RG, GL_FLOAT, heat_data);
+	}
+
+	/**
+	 * fill 'visible' with the indices of snapshot organisms inside 'bounds' (min x, min y, max x,
+	 * max y). Chunks entirely inside or outside are taken or skipped whole.
+	 * @return the number of visible organisms
+	 */
+	private int cullToCamera(WorldSnapshot world, float[] bounds){
+		float x0 = bounds[0], y0 = bounds[1], x1 = bounds[2], y1 = bounds[3];
+		if(visible.length < world.size())
+			visible = new int[Math.max(world.size(), 2*visible.length)];
+		int n = 0;
+		for(int c=0; c<world.getChunkCount(); c++){
+			if(world.chunkOutside(c, x0, y0, x1, y1)) continue;
+			int end = world.getChunkEnd(c);
+			if(world.chunkInside(c, x0, y0, x1, y1)){
+				for(int i=world.getChunkStart(c); i<end; i++)
+					visible[n++] = i;
+			} else{
+				for(int i=world.getChunkStart(c); i<end; i++){
+					float x = world.getX(i), y = world.getY(i);
+					if(x >= x0 && x <= x1 && y >= y0 && y <= y1)
+						visible[n++] = i;
+				}
+			}
+		}
+		return n;
+	}
+
+	/**
+	 * copy the attributes of the first n 'visible' organisms into instance_vbo
+	 */
+	private void uploadInstances(WorldSnapshot world, int n){
+		if(instance_data.capacity() < n * INSTANCE_FLOATS)
+			instance_data = BufferUtils.createFloatBuffer(Math.max(n, 2 * instance_data.capacity() / INSTANCE_FLOATS) * INSTANCE_FLOATS);
+		instance_data.clear();
+		for(int v=0; v<n; v++){
+			int i = visible[v];
+			instance_data.put(world.getX(i));
+			instance_data.put(world.getY(i));
+			instance_data.put(world.getHeading(i));
+			instance_data.put(world.getSpeed(i));
+			instance_data.put(world.getEnergy(i));
+			instance_data.put(world.getAttackOutput(i));
+		}
+		instance_data.flip();
+		glBindBuffer(GL_ARRAY_BUFFER, instance_vbo);
+		// re-specifying the storage lets the driver hand us fresh memory instead of waiting for
+		// last frame's draws to finish with the old contents
+		glBufferData(GL_ARRAY_BUFFER, 4L * instance_data.capacity(), GL_STREAM_DRAW);
+		glBufferSubData(GL_ARRAY_BUFFER, 0, instance_data);
+		glBindBuffer(GL_ARRAY_BUFFER, 0);
 	}
 
 	private void clearAll(){
@@ -234,7 +390,7 @@ public class RenderGL {
 		circle_vbo = glGenBuffers();
 		kite_vbo = glGenBuffers();
 		spike_vbo = glGenBuffers();
-		organism_instance_ubo = glGenBuffers();
+		instance_vbo = glGenBuffers();
 		
 		/////////////////
 		// SCREEN-QUAD //
@@ -310,9 +466,9 @@ public class RenderGL {
 		// ORGO INSTANCE //
 		///////////////////
 		
-		glBindBuffer(GL_UNIFORM_BUFFER, organism_instance_ubo);
+		glBindBuffer(GL_ARRAY_BUFFER, instance_vbo);
 		// glBufferData allocates space, so that later we can repopulate with glBufferSubData
-		glBufferData(GL_UNIFORM_BUFFER, Math.max(ubo_circle_stride, ubo_scale_anim_stride), GL_STREAM_DRAW);
+		glBufferData(GL_ARRAY_BUFFER, 4L * instance_data.capacity(), GL_STREAM_DRAW);
 	}
 
 	private void initShaders(){
@@ -320,6 +476,7 @@ public class RenderGL {
 		// set uniforms (setting here rather than in redraw() since they won't change)
 		pPerlin.use();
 		{
+			// octaves and scale come from the config, so any of the environment's generators will do
 			TimeVaryingRFE rfe = (TimeVaryingRFE) theEnvironment;
 			PerlinGenerator pg = (PerlinGenerator) rfe.getGenerator();
 			pPerlin.setUniformi("octaves", pg.getOctaves());
@@ -333,6 +490,15 @@ public class RenderGL {
 		
 		pOrgoCircle = Program.createProgram("shaders/vert_organism.glsl", "shaders/frag_energyCircle.glsl");
 		pOrgoColorAnimate   = Program.createProgram("shaders/vert_animate_scale.glsl", "shaders/frag_rgb.glsl");
+		pOrgoPoint = Program.createProgram("shaders/vert_point.glsl", "shaders/frag_energyCircle.glsl");
+		
+		pHeatmap = Program.createProgram("shaders/vert_screenToWorld.glsl", "shaders/frag_heatmap.glsl");
+		pHeatmap.use();
+		{
+			pHeatmap.setUniformi("heat", 0); // using GL_TEXTURE0
+			pHeatmap.setUniformf("saturation", HEATMAP_SATURATION);
+		}
+		pHeatmap.unuse();
 		
 		exitOnGLError("Shader compilation");
 	}
@@ -341,33 +507,51 @@ public class RenderGL {
 		// create perlin lookup texture
 		perlin_lookup_tex = glGenTextures();
 		perlin_next_lookup_tex = glGenTextures();
-		updateTexImages();
+		for(int tex : new int[] {perlin_lookup_tex, perlin_next_lookup_tex}){
+			glBindTexture(GL_TEXTURE_1D, tex);
+			glTexParameteri(GL_TEXTURE_1D, GL_TEXTURE_MIN_FILTER, GL_NEAREST);
+			glTexParameteri(GL_TEXTURE_1D, GL_TEXTURE_MAG_FILTER, GL_NEAREST);
+			glTexParameteri(GL_TEXTURE_1D, GL_TEXTURE_WRAP_S, GL_REPEAT);
+			glTexParameteri(GL_TEXTURE_1D, GL_TEXTURE_WRAP_T, GL_REPEAT);
+		}
+		// tables are uploaded by the first redraw(), from its snapshot
+		// heatmap: one texel per cell, filled by updateHeatmap()
+		heatmap_tex = glGenTextures();
+		glBindTexture(GL_TEXTURE_2D, heatmap_tex);
+		glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, GL_NEAREST);
+		glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, GL_NEAREST);
+		glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_S, GL_CLAMP_TO_EDGE);
+		glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_T, GL_CLAMP_TO_EDGE);
 	}
 	
-	// TODO this is just temporary
-	private void updateTexImages(){
-		TimeVaryingRFE rfe = (TimeVaryingRFE) theEnvironment;
-		PerlinGenerator pg = (PerlinGenerator) rfe.getGenerator();
-		PerlinGenerator pg2 = (PerlinGenerator) rfe.getNextGenerator();
-		FloatBuffer table = BufferUtils.createFloatBuffer(PerlinGenerator.TABLE_SIZE);
+	/**
+	 * upload the lookup tables of the snapshot's current and next perlin generators, if they changed
+	 * since the last upload (i.e. the environment swapped generators or one was reseeded). Everything
+	 * comes from the snapshot, so the tables always match the snapshot's fade.
+	 */
+	private void updateTexImages(WorldSnapshot world){
+		if(world.getGenerator() == null) return; // nothing captured yet
+		if(world.getGeneration() == perlin_generation && world.getGeneratorVersion() == perlin_version
+				&& world.getNextGeneratorVersion() == perlin_next_version)
+			return;
+		perlin_generation = world.getGeneration();
+		perlin_version = world.getGeneratorVersion();
+		perlin_next_version = world.getNextGeneratorVersion();
+		PerlinGenerator pg = (PerlinGenerator) world.getGenerator();
+		PerlinGenerator pg2 = (PerlinGenerator) world.getNextGenerator();
+		
 		glActiveTexture(GL_TEXTURE0);
 		glBindTexture(GL_TEXTURE_1D, perlin_lookup_tex);
-		table.put(pg.getTableNormalized()); table.flip();
+		perlin_table.clear();
+		perlin_table.put(pg.getTableNormalized()); perlin_table.flip();
 		// the use of GL_RED here is basically saying that there is only 1 channel of data (as opposed to RGB which has 3)
-		glTexImage1D(GL_TEXTURE_1D, 0, GL_R32F, PerlinGenerator.TABLE_SIZE, 0, GL11.GL_RED, GL_FLOAT, table);
-		glTexParameteri(GL_TEXTURE_1D, GL_TEXTURE_MIN_FILTER, GL_NEAREST);
-		glTexParameteri(GL_TEXTURE_1D, GL_TEXTURE_MAG_FILTER, GL_NEAREST);
-		glTexParameteri(GL_TEXTURE_1D, GL_TEXTURE_WRAP_S, GL_REPEAT);
-		glTexParameteri(GL_TEXTURE_1D, GL_TEXTURE_WRAP_T, GL_REPEAT);
+		glTexImage1D(GL_TEXTURE_1D, 0, GL_R32F, PerlinGenerator.TABLE_SIZE, 0, GL11.GL_RED, GL_FLOAT, perlin_table);
 		// make second texture for fading
 		glActiveTexture(GL_TEXTURE1);
 		glBindTexture(GL_TEXTURE_1D, perlin_next_lookup_tex);
-		table.put(pg2.getTableNormalized()); table.flip();
-		glTexImage1D(GL_TEXTURE_1D, 0, GL_R32F, PerlinGenerator.TABLE_SIZE, 0, GL11.GL_RED, GL_FLOAT, table);
-		glTexParameteri(GL_TEXTURE_1D, GL_TEXTURE_MIN_FILTER, GL_NEAREST);
-		glTexParameteri(GL_TEXTURE_1D, GL_TEXTURE_MAG_FILTER, GL_NEAREST);
-		glTexParameteri(GL_TEXTURE_1D, GL_TEXTURE_WRAP_S, GL_REPEAT);
-		glTexParameteri(GL_TEXTURE_1D, GL_TEXTURE_WRAP_T, GL_REPEAT);
+		perlin_table.clear();
+		perlin_table.put(pg2.getTableNormalized()); perlin_table.flip();
+		glTexImage1D(GL_TEXTURE_1D, 0, GL_R32F, PerlinGenerator.TABLE_SIZE, 0, GL11.GL_RED, GL_FLOAT, perlin_table);
 		
 	}
 
@@ -377,6 +561,7 @@ public class RenderGL {
 		circle_vao = glGenVertexArrays();
 		kite_vao = glGenVertexArrays();
 		spike_vao = glGenVertexArrays();
+		point_vao = glGenVertexArrays();
 		
 		/////////////////////////
 		// SCREENQUAD BINDINGS //
@@ -392,39 +577,75 @@ public class RenderGL {
 		/////////////////////
 		
 		glBindVertexArray(circle_vao);
-		glEnableVertexAttribArray(0);
-		glBindBuffer(GL_ARRAY_BUFFER, circle_vbo);
-		
 		int attrLocVertex = pOrgoCircle.getAttribute("vertex");
+		glEnableVertexAttribArray(attrLocVertex);
+		glBindBuffer(GL_ARRAY_BUFFER, circle_vbo);
 		glVertexAttribPointer(attrLocVertex, 2, GL_FLOAT, false, 8, 0);
 		
-		pOrgoCircle.bindUniformBlock("instanceBlock", organism_instance_ubo, ubo_binding);
-		glBindBufferBase(GL_UNIFORM_BUFFER, ubo_binding, organism_instance_ubo);
+		glBindBuffer(GL_ARRAY_BUFFER, instance_vbo);
+		instanceAttribute(pOrgoCircle.getAttribute("center"), 2, OFFSET_X);
+		instanceAttribute(pOrgoCircle.getAttribute("energy"), 1, OFFSET_ENERGY);
 		
 		///////////////////
 		// KITE BINDINGS //
 		///////////////////
 		int attrLocMesh = pOrgoColorAnimate.getAttribute("mesh");
+		int attrLocTranslate = pOrgoColorAnimate.getAttribute("translate");
+		int attrLocRotate = pOrgoColorAnimate.getAttribute("rotate");
+		int attrLocEffect = pOrgoColorAnimate.getAttribute("effect");
 		
 		glBindVertexArray(kite_vao);
-		glEnableVertexAttribArray(0);
+		glEnableVertexAttribArray(attrLocMesh);
 		glBindBuffer(GL_ARRAY_BUFFER, kite_vbo);
 		glVertexAttribPointer(attrLocMesh, 3, GL_FLOAT, false, 12, 0);
 		
-		pOrgoColorAnimate.bindUniformBlock("effectInstance", organism_instance_ubo, ubo_binding);
-		glBindBufferBase(GL_UNIFORM_BUFFER, ubo_binding, organism_instance_ubo);
+		glBindBuffer(GL_ARRAY_BUFFER, instance_vbo);
+		instanceAttribute(attrLocTranslate, 2, OFFSET_X);
+		instanceAttribute(attrLocRotate, 1, OFFSET_HEADING);
+		instanceAttribute(attrLocEffect, 1, OFFSET_SPEED);
 		
 		////////////////////
 		// SPIKE BINDINGS //
 		////////////////////
 		
 		glBindVertexArray(spike_vao);
-		glEnableVertexAttribArray(0);
+		glEnableVertexAttribArray(attrLocMesh);
 		glBindBuffer(GL_ARRAY_BUFFER, spike_vbo);
 		glVertexAttribPointer(attrLocMesh, 3, GL_FLOAT, false, 12, 0);
 		
-		pOrgoColorAnimate.bindUniformBlock("effectInstance", organism_instance_ubo, ubo_binding);
-		glBindBufferBase(GL_UNIFORM_BUFFER, ubo_binding, organism_instance_ubo);
+		glBindBuffer(GL_ARRAY_BUFFER, instance_vbo);
+		instanceAttribute(attrLocTranslate, 2, OFFSET_X);
+		instanceAttribute(attrLocRotate, 1, OFFSET_HEADING);
+		instanceAttribute(attrLocEffect, 1, OFFSET_ATTACK);
+		
+		////////////////////
+		// POINT BINDINGS //
+		////////////////////
+		
+		// one vertex per organism, read straight from the instance buffer
+		glBindVertexArray(point_vao);
+		glBindBuffer(GL_ARRAY_BUFFER, instance_vbo);
+		int attrLocCenter = pOrgoPoint.getAttribute("center");
+		glEnableVertexAttribArray(attrLocCenter);
+		glVertexAttribPointer(attrLocCenter, 2, GL_FLOAT, false, INSTANCE_STRIDE, OFFSET_X);
+		int attrLocEnergy = pOrgoPoint.getAttribute("energy");
+		glEnableVertexAttribArray(attrLocEnergy);
+		glVertexAttribPointer(attrLocEnergy, 1, GL_FLOAT, false, INSTANCE_STRIDE, OFFSET_ENERGY);
+		
+		glBindVertexArray(0);
+		glBindBuffer(GL_ARRAY_BUFFER, 0);
+	}
+	
+	/**
+	 * point a vertex attribute of the bound VAO at instance_vbo (which must be bound to
+	 * GL_ARRAY_BUFFER), advancing once per instance instead of once per vertex
+	 */
+	private void instanceAttribute(int location, int size, int offset){
+		// (attributes the shader doesn't use have no location)
+		if(location < 0) return;
+		glEnableVertexAttribArray(location);
+		glVertexAttribPointer(location, size, GL_FLOAT, false, INSTANCE_STRIDE, offset);
+		glVertexAttribDivisor(location, 1);
 	}
 
 	public void destroy(){
@@ -435,13 +656,18 @@ public class RenderGL {
 		if(circle_vbo != 0) glDeleteBuffers(circle_vbo);
 		if(kite_vao != 0) glDeleteVertexArrays(kite_vao);
 		if(kite_vbo != 0) glDeleteBuffers(kite_vbo);
-		if(spike_vao != 0) glDeleteBuffers(spike_vao);
+		if(spike_vao != 0) glDeleteVertexArrays(spike_vao);
+		if(point_vao != 0) glDeleteVertexArrays(point_vao);
 		if(spike_vbo != 0) glDeleteBuffers(spike_vbo);
-		if(organism_instance_ubo != 0) glDeleteBuffers(organism_instance_ubo);
+		if(instance_vbo != 0) glDeleteBuffers(instance_vbo);
 		if(perlin_lookup_tex != 0) glDeleteTextures(perlin_lookup_tex);
+		if(perlin_next_lookup_tex != 0) glDeleteTextures(perlin_next_lookup_tex);
+		if(heatmap_tex != 0) glDeleteTextures(heatmap_tex);
 		if(pPerlin != null) pPerlin.destroy();
 		if(pOrgoCircle != null) pOrgoCircle.destroy();
 		if(pOrgoColorAnimate != null) pOrgoColorAnimate.destroy();
+		if(pOrgoPoint != null) pOrgoPoint.destroy();
+		if(pHeatmap != null) pHeatmap.destroy();
 		// destroy lwjgl display
 		Display.destroy();
 	}
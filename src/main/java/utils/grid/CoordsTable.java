@@ -0,0 +1,174 @@
+package utils.grid;
+
+/**
+ * An open-addressing (linear probing) hash table whose keys are pairs of integer coordinates
+ * packed into a single long (see pack()). Nothing is allocated on get(), put() of an existing
+ * key, or remove(), and get() only reads the table, so any number of threads may look things
+ * up at once as long as no thread is changing it.
+ *
+ * @author ewy-man
+ *
+ * @param <V> the type of value stored at each coordinate
+ */
+public class CoordsTable<V> {
+
+	/** must be a power of 2 */
+	private static final int INITIAL_CAPACITY = 64;
+
+	private long[] keys;
+	/** null marks an empty slot */
+	private Object[] values;
+	private int size;
+	private int mask;
+
+	public CoordsTable() {
+		allocate(INITIAL_CAPACITY);
+		size = 0;
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = new Object[capacity];
+		mask = capacity - 1;
+	}
+
+	/**
+	 * Packs the coordinates (x,y) into a single key: x in the high 32 bits and y in the low 32.
+	 */
+	public static long pack(int x, int y) {
+		return ((long) x << 32) | (y & 0xFFFFFFFFL);
+	}
+
+	public static int unpackX(long key) {
+		return (int) (key >> 32);
+	}
+
+	public static int unpackY(long key) {
+		return (int) key;
+	}
+
+	/**
+	 * Spreads the bits of the key so that neighboring coordinates land far apart in the table.
+	 */
+	private static int hash(long key) {
+		key ^= key >>> 33;
+		key *= 0xFF51AFD7ED558CCDL;
+		key ^= key >>> 33;
+		return (int) key;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Returns the value at coordinates (x,y), or null if there is none.
+	 */
+	public V get(int x, int y) {
+		return get(pack(x, y));
+	}
+
+	@SuppressWarnings("unchecked")
+	public V get(long key) {
+		int i = hash(key) & mask;
+		while(values[i] != null) {
+			if(keys[i] == key)
+				return (V) values[i];
+			i = (i + 1) & mask;
+		}
+		return null;
+	}
+
+	/**
+	 * Sets the value at a key, returning the value it replaced (or null).
+	 *
+	 * @param value must not be null
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(long key, V value) {
+		if(value == null)
+			throw new IllegalArgumentException("CoordsTable cannot hold null values");
+		int i = hash(key) & mask;
+		while(values[i] != null) {
+			if(keys[i] == key) {
+				V old = (V) values[i];
+				values[i] = value;
+				return old;
+			}
+			i = (i + 1) & mask;
+		}
+		keys[i] = key;
+		values[i] = value;
+		size++;
+		// keep the table at most half full so that probe sequences stay short
+		if(2 * size > values.length)
+			rehash(2 * values.length);
+		return null;
+	}
+
+	/**
+	 * Removes the value at a key, returning it (or null if there was none).
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(long key) {
+		int i = hash(key) & mask;
+		while(values[i] != null) {
+			if(keys[i] == key) {
+				V old = (V) values[i];
+				deleteSlot(i);
+				size--;
+				return old;
+			}
+			i = (i + 1) & mask;
+		}
+		return null;
+	}
+
+	public void clear() {
+		for(int i = 0; i < values.length; i++)
+			values[i] = null;
+		size = 0;
+	}
+
+	/**
+	 * Empties slot i, then shifts back any later entries of the same probe run that would no
+	 * longer be reachable (so no 'deleted' markers are needed).
+	 */
+	private void deleteSlot(int i) {
+		values[i] = null;
+		int j = i;
+		while(true) {
+			j = (j + 1) & mask;
+			if(values[j] == null)
+				return;
+			int home = hash(keys[j]) & mask;
+			// the entry at j can stay if its home slot lies cyclically in (i, j]
+			boolean stays = (i <= j) ? (i < home && home <= j) : (i < home || home <= j);
+			if(!stays) {
+				keys[i] = keys[j];
+				values[i] = values[j];
+				values[j] = null;
+				i = j;
+			}
+		}
+	}
+
+	private void rehash(int capacity) {
+		long[] old_keys = keys;
+		Object[] old_values = values;
+		allocate(capacity);
+		for(int k = 0; k < old_values.length; k++) {
+			if(old_values[k] != null) {
+				int i = hash(old_keys[k]) & mask;
+				while(values[i] != null)
+					i = (i + 1) & mask;
+				keys[i] = old_keys[k];
+				values[i] = old_values[k];
+			}
+		}
+	}
+}
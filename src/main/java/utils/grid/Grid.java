@@ -1,55 +1,89 @@
 package utils.grid;
 
+import java.util.AbstractCollection;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
 
 import bio.organisms.AbstractOrganism;
 import bio.organisms.Entity;
 import bio.organisms.SimpleCircleOrganism;
 
 /**
- * A wrapper for a HashMap<HashCoords,Chunk> object. Contains
- * put and get methods for accessing the HashMap, only the
- * key is always a pair of integers, and the values are
- * Chunks.
+ * Divides space into square Chunks, each holding the Entities
+ * inside it. Chunks are found by their integer coordinates
+ * through a CoordsTable, and are also kept in a list in the
+ * order they were created, which is the order iterator() and
+ * getChunks() visit them in.
  * 
- * The iterator() method returns the iterator for the
- * collection view of the values of the HashMap, so it is
- * possible to easily loop through the Chunks stored in the
- * Grid without knowing the coordinates.
+ * Adding, moving and removing Entities doesn't allocate once
+ * the Chunks exist; Chunks that empty out are recycled. Queries (get, getInDisk, getInBox, ...) only
+ * read the Grid, so they may be run from several threads at once
+ * as long as nothing is modifying it.
+ * 
+ * The Grid also keeps every Entity in a dense list, so that
+ * getCount() and getRandom() take constant time. An Entity may
+ * only be in one Grid at a time.
  * 
  * @author ewy-man
  */
 public class Grid<T extends Entity> implements Iterable<T> {
 	
-	private static final double ROOT_2 = Math.sqrt(2);
-	
-	private HashMap<HashCoords,Chunk> map;
-	private HashCoords coords;
+	private CoordsTable<Chunk> map;
+	/** every Chunk in map, in the order they were created */
+	private ArrayList<Chunk> chunks;
+	/** every Entity in the Grid, each at its getGridIndex() */
+	private ArrayList<T> residents;
+	/** reused by updateChunks() for Entities that change Chunk */
+	private ArrayList<T> moved;
+	/** Chunks that have become empty since the last removeEmpties() */
+	private ArrayList<Chunk> emptied;
+	/** removed Chunks, ready to be reused by summonChunk() */
+	private ArrayList<Chunk> pool;
 	private final int CHUNK_SIZE;
 	
 	public Grid(int chunkSize) {
 		CHUNK_SIZE = chunkSize > 0 ? chunkSize : 1;
-		map = new HashMap<HashCoords,Chunk>();
-		coords = new HashCoords();
+		map = new CoordsTable<Chunk>();
+		chunks = new ArrayList<Chunk>();
+		residents = new ArrayList<T>();
+		moved = new ArrayList<T>();
+		emptied = new ArrayList<Chunk>();
+		pool = new ArrayList<Chunk>();
 	}
 	
 	/**
-	 * Loop through the HashMap and remove any mappings which
-	 * map to null or an empty Chunk.
+	 * Remove all empty Chunks. Only the Chunks that have emptied out since
+	 * the last call are looked at, and they are kept for reuse.
 	 */
 	public void removeEmpties() {
-		
-//		map.remove(null);
-		for(Iterator<Chunk> i = map.values().iterator(); i.hasNext(); ) {
-			Chunk c = i.next();
+		boolean removed = false;
+		for(int i = 0; i < emptied.size(); i++) {
+			Chunk c = emptied.get(i);
+			c.inEmptied = false;
 			if(c.isEmpty()) {
-				i.remove();
+				map.remove(c.key);
+				c.pooled = true;
+				pool.add(c);
+				removed = true;
 			}
 		}
+		emptied.clear();
+		if(!removed)
+			return;
+		
+		int kept = 0;
+		for(int i = 0; i < chunks.size(); i++) {
+			Chunk c = chunks.get(i);
+			if(!c.pooled)
+				chunks.set(kept++, c);
+		}
+		while(chunks.size() > kept)
+			chunks.remove(chunks.size() - 1);
 	}
 	
 	/**
@@ -59,15 +93,36 @@ public class Grid<T extends Entity> implements Iterable<T> {
 	 * @param orgo
 	 */
 	public void add(T orgo) {
+		orgo.setGridIndex(residents.size());
+		residents.add(orgo);
+		place(orgo);
+	}
+	
+	/**
+	 * Puts an Entity that is already a resident into the Chunk at its position.
+	 */
+	private void place(T orgo) {
 		
 		// Compute the appropriate chunk coordinates of the AbstractOrganism.
 		int x = (int)Math.floor(orgo.getX()/CHUNK_SIZE);
 		int y = (int)Math.floor(orgo.getY()/CHUNK_SIZE);
-		coords.set(x,y);
 		
 		// Add organism to chunk.
 		Chunk c = summonChunk(x,y);
-		c.add(orgo);
+		c.append(orgo);
+	}
+	
+	/**
+	 * Takes an Entity out of the list of residents (its Chunk has already let go of it).
+	 */
+	private void unregister(T orgo) {
+		int i = orgo.getGridIndex();
+		T last = residents.remove(residents.size() - 1);
+		if(last != orgo) {
+			residents.set(i, last);
+			last.setGridIndex(i);
+		}
+		orgo.setGridIndex(-1);
 	}
 	
 	/**
@@ -79,24 +134,39 @@ public class Grid<T extends Entity> implements Iterable<T> {
 	 */
 	public void add(Collection<T> ents) {
 		for(T e : ents) {
-			int x = (int)Math.floor(e.getX()/CHUNK_SIZE);
-			int y = (int)Math.floor(e.getY()/CHUNK_SIZE);
-			coords.set(x, y);
-			
-			Chunk c = summonChunk(x,y);
-			c.add(e);
+			add(e);
 		}
 	}
 	
 	public int getCount(){
-		int c = 0;
-		for(Chunk ch : this.map.values())
-			c += ch.size();
-		return c;
+		return residents.size();
+	}
+	
+	/**
+	 * Returns an Entity chosen uniformly at random, or null if the Grid is empty.
+	 */
+	public T getRandom(Random rand){
+		if(residents.isEmpty())
+			return null;
+		return residents.get(rand.nextInt(residents.size()));
 	}
 	
 	public int getChunkCount() {
-		return map.values().size();
+		return map.size();
+	}
+	
+	/**
+	 * Returns a list of all nonempty Chunks, in the same order that iterator()
+	 * visits them. The list is a copy, but the Chunks are not.
+	 */
+	public List<Chunk> getChunks() {
+		ArrayList<Chunk> nonempty = new ArrayList<Chunk>(chunks.size());
+		for(int i = 0; i < chunks.size(); i++) {
+			Chunk c = chunks.get(i);
+			if(!c.isEmpty())
+				nonempty.add(c);
+		}
+		return nonempty;
 	}
 	
 	/**
@@ -107,15 +177,23 @@ public class Grid<T extends Entity> implements Iterable<T> {
 	 * @return
 	 */
 	public Chunk get(int x, int y) {
-		coords.set(x,y);
-		return map.get(coords);
+		return map.get(CoordsTable.pack(x, y));
 	}
 	
 	/**
 	 * Clears all Chunks and Organisms from the Grid.
 	 */
 	public void clear() {
+		for(int i = 0; i < chunks.size(); i++) {
+			Chunk c = chunks.get(i);
+			c.clear();
+			c.inEmptied = false;
+			c.pooled = true;
+			pool.add(c);
+		}
 		map.clear();
+		chunks.clear();
+		emptied.clear();
 	}
 	
 	/**
@@ -128,124 +206,210 @@ public class Grid<T extends Entity> implements Iterable<T> {
 		return new GridIterator();
 	}
 	
+	/**
+	 * Callback for the forEach...() queries.
+	 */
+	public static interface Visitor<E> {
+		public void visit(E e);
+	}
+	
 	/**
 	 * Returns a LinkedList of all those AbstractOrganisms within a radius of r
 	 * of the coordinates (x,y). The parameters x,y, and r are assumed to be in
 	 * world coordinates, so no scaling is necessary.
 	 */
 	public LinkedList<T> getInDisk(double x, double y, double r) {
-		
-		x /= CHUNK_SIZE;
-		y /= CHUNK_SIZE;
-		r /= CHUNK_SIZE;
-		double s = r + ROOT_2;
-		
-		int x_L = (int)(Math.floor(x - s));
-		int x_U = (int)(Math.ceil(x + s));
-		int y_L = (int)(Math.floor(y - s));
-		int y_U = (int)(Math.ceil(y + s));
-		int x_range = x_U - x_L + 1;
-		int y_range = y_U - y_L + 1;
-		boolean[][] markersR = new boolean[x_range][y_range];
-		boolean[][] markersS = new boolean[x_range][y_range];
-		
 		LinkedList<T> ents = new LinkedList<T>();
-		
-		for(int i = 0; i < x_range; i++) {
-			for(int j = 0; j < y_range; j++) {
-				double dx = i + x_L - x;
-				double dy = j + y_L - y;
-				double radSqrd = dx*dx + dy*dy;
-				markersR[i][j] = radSqrd < r*r;
-				markersS[i][j] = radSqrd < s*s;
-			}
+		scanDisk(x, y, r, false, null, ents);
+		return ents;
+	}
+	
+	/**
+	 * Adds all Entities within a radius r of (x,y) to 'into' (which is
+	 * not cleared first) and returns how many were added.
+	 */
+	public int getInDisk(double x, double y, double r, Collection<? super T> into) {
+		return scanDisk(x, y, r, false, null, into);
+	}
+	
+	/**
+	 * Calls visitor.visit() on every Entity within a radius r of (x,y).
+	 */
+	public void forEachInDisk(double x, double y, double r, Visitor<? super T> visitor) {
+		scanDisk(x, y, r, false, visitor, null);
+	}
+	
+	/**
+	 * Returns the number of Entities within a radius r of (x,y).
+	 */
+	public int countInDisk(double x, double y, double r) {
+		return scanDisk(x, y, r, false, null, null);
+	}
+
+	/**
+	 * For every Entity in Chunk c, counts the Entities within a radius r of it (itself included):
+	 * counts[k] = countInDisk(x, y, r) for the k'th Entity of c, in iteration order. Each
+	 * neighboring Chunk is looked up once for all of c, and skipped or counted whole at once when
+	 * that holds for every point in c; only Chunks near the edge of the disks are checked one
+	 * Entity at a time.
+	 *
+	 * @param counts room for at least c.size() counts
+	 */
+	public void countNeighbors(Chunk c, double r, int[] counts) {
+		int n = c.size;
+		for(int k = 0; k < n; k++)
+			counts[k] = 0;
+		if(n == 0)
+			return;
+
+		r /= CHUNK_SIZE;
+		double r2 = r*r;
+		// how far to trust 'every point of c lies in its square'
+		final double EPS = 1e-9;
+		boolean homed = true;
+		for(int k = 0; k < n && homed; k++) {
+			Entity e = (Entity) c.items[k];
+			double x = e.getX()/CHUNK_SIZE, y = e.getY()/CHUNK_SIZE;
+			homed = x >= c.x && x <= c.x + 1 && y >= c.y && y <= c.y + 1;
 		}
-		
-		for(int i = 0; i < x_range - 1; i++) {
-			for(int j = 0; j < y_range - 1; j++) {
-				
-				coords.set(i + x_L, j + y_L);
-				
-				if(markersR[i][j] && markersR[i+1][j] && markersR[i][j+1] && markersR[i+1][j+1]) {
-					Chunk c = map.get(coords);
-					if(c != null)
-						ents.addAll(c);
-				} else if(markersS[i][j] && markersS[i+1][j] && markersS[i][j+1] && markersS[i+1][j+1]) {
-					Chunk c = map.get(coords);
-					if(c != null) {
-						// Check individual organisms
-						for(T e : c) {
-							double dx = e.getX()/CHUNK_SIZE - x;
-							double dy = e.getY()/CHUNK_SIZE - y;
-							if(dx*dx + dy*dy <= r*r) {
-								ents.add(e);
-							}
-						}
+
+		int reach = (int)Math.ceil(r);
+		for(int i = c.x - reach; i <= c.x + reach; i++) {
+			for(int j = c.y - reach; j <= c.y + reach; j++) {
+				Chunk other = get(i, j);
+				if(other == null || other.size == 0)
+					continue;
+
+				if(homed) {
+					// nearest and farthest distances between the two squares
+					double near_x = Math.max(0, Math.abs(i - c.x) - 1);
+					double near_y = Math.max(0, Math.abs(j - c.y) - 1);
+					double far_x = Math.abs(i - c.x) + 1;
+					double far_y = Math.abs(j - c.y) + 1;
+					double near = Math.sqrt(near_x*near_x + near_y*near_y);
+					double far = Math.sqrt(far_x*far_x + far_y*far_y);
+					if(near > r + EPS)
+						continue;
+					if(far < r - EPS) {
+						for(int k = 0; k < n; k++)
+							counts[k] += other.size;
+						continue;
+					}
+				}
+
+				// same tests as scanDisk(), for each point of c
+				for(int k = 0; k < n; k++) {
+					Entity e = (Entity) c.items[k];
+					double x = e.getX()/CHUNK_SIZE;
+					double y = e.getY()/CHUNK_SIZE;
+					if(i < (int)Math.floor(x - r) || i > (int)Math.floor(x + r)
+							|| j < (int)Math.floor(y - r) || j > (int)Math.floor(y + r))
+						continue;
+					double near_x = Math.max(i, Math.min(x, i + 1)) - x;
+					double near_y = Math.max(j, Math.min(y, j + 1)) - y;
+					if(near_x*near_x + near_y*near_y > r2)
+						continue;
+					double far_x = Math.max(Math.abs(i - x), Math.abs(i + 1 - x));
+					double far_y = Math.max(Math.abs(j - y), Math.abs(j + 1 - y));
+					if(far_x*far_x + far_y*far_y < r2) {
+						counts[k] += other.size;
+						continue;
+					}
+					for(int m = 0; m < other.size; m++) {
+						Entity o = (Entity) other.items[m];
+						double dx = o.getX()/CHUNK_SIZE - x;
+						double dy = o.getY()/CHUNK_SIZE - y;
+						if(dx*dx + dy*dy <= r2)
+							counts[k]++;
 					}
 				}
 			}
 		}
-		
+	}
+
+	/**
+	 * Like getInDisk, but only returns the half of the disk 'above' (x,y), so
+	 * that calling this for every Entity finds each nearby pair once.
+	 */
+	public LinkedList<T> getInDiskMut(double x, double y, double r) {
+		LinkedList<T> ents = new LinkedList<T>();
+		scanDisk(x, y, r, true, null, ents);
 		return ents;
-		
 	}
 	
-	public LinkedList<T> getInDiskMut(double x, double y, double r) {
+	/**
+	 * Calls visitor.visit() on every Entity in the half of the disk 'above' (x,y)
+	 * (see getInDiskMut).
+	 */
+	public void forEachInDiskMut(double x, double y, double r, Visitor<? super T> visitor) {
+		scanDisk(x, y, r, true, visitor, null);
+	}
+	
+	/**
+	 * Finds the Entities in a disk without allocating anything. Whole chunks inside
+	 * the disk are taken without looking at their Entities' positions; chunks on
+	 * the edge are checked one Entity at a time.
+	 * 
+	 * @param half only keep Entities with dy > 0 (or dy == 0 and dx > 0), and
+	 * strictly inside the radius
+	 * @param visitor called for each Entity found (may be null)
+	 * @param into each Entity found is added here (may be null)
+	 * @return the number of Entities found
+	 */
+	@SuppressWarnings("unchecked")
+	private int scanDisk(double x, double y, double r, boolean half, Visitor<? super T> visitor, Collection<? super T> into) {
 		
 		x /= CHUNK_SIZE;
 		y /= CHUNK_SIZE;
 		r /= CHUNK_SIZE;
-		double s = r + ROOT_2;
-		
-		int x_L = (int)Math.floor(x - s);
-		int x_U = (int)Math.ceil(x + s);
-		int y_L = (int)Math.floor(y);
-		int y_U = (int)Math.ceil(y + s);
-		int x_range = x_U - x_L + 1;
-		int y_range = y_U - y_L + 1;
-		boolean[][] markersR = new boolean[x_range][y_range];
-		boolean[][] markersS = new boolean[x_range][y_range];
-		
-		LinkedList<T> ents = new LinkedList<T>();
-		
-		for(int i = 0; i < x_range; i++) {
-			for(int j = 0; j < y_range; j++) {
-				double dx = i + x_L - x;
-				double dy = j + y_L - y;
-				double radSqrd = dx*dx + dy*dy;
-				markersR[i][j] = radSqrd < r*r;
-				markersS[i][j] = radSqrd < s*s;
-			}
-		}
-		for(int i = 0 ; i < y_range; i++) {
-			markersR[i][0] = false;
-		}
-		
-		for(int i = 0; i < x_range - 1; i++) {
-			for(int j = 0; j < y_range - 1; j++) {
+		double r2 = r*r;
+		boolean count_only = visitor == null && into == null;
+		int count = 0;
+		
+		int x_L = (int)Math.floor(x - r);
+		int x_U = (int)Math.floor(x + r);
+		int y_L = half ? (int)Math.floor(y) : (int)Math.floor(y - r);
+		int y_U = (int)Math.floor(y + r);
+		
+		for(int i = x_L; i <= x_U; i++) {
+			for(int j = y_L; j <= y_U; j++) {
+				Chunk c = get(i, j);
+				if(c == null || c.size == 0)
+					continue;
+				
+				// skip chunks that don't touch the disk at all
+				double near_x = Math.max(i, Math.min(x, i + 1)) - x;
+				double near_y = Math.max(j, Math.min(y, j + 1)) - y;
+				if(near_x*near_x + near_y*near_y > r2)
+					continue;
 				
-				coords.set(i + x_L, j + y_L);
+				// the whole chunk is in the disk when its farthest corner is
+				double far_x = Math.max(Math.abs(i - x), Math.abs(i + 1 - x));
+				double far_y = Math.max(Math.abs(j - y), Math.abs(j + 1 - y));
+				boolean inside = far_x*far_x + far_y*far_y < r2 && (!half || j > y);
 				
-				if(markersR[i][j] & markersR[i+1][j] & markersR[i][j+1] & markersR[i+1][j+1]) {
-					Chunk c = map.get(coords);
-					ents.addAll(c);
-				} else if(markersS[i][j] & markersS[i+1][j] & markersS[i][j+1] & markersS[i+1][j+1]) {
-					Chunk c = map.get(coords);
-					if(c != null) {
-						// Check individual organisms
-						for(T e : c) {
-							double dx = e.getX()/CHUNK_SIZE - x;
-							double dy = e.getY()/CHUNK_SIZE - y;
-							if(dx*dx + dy*dy < r*r & ((dy > 0) | (dy == 0 & dx > 0)) ) {
-								ents.add(e);
-							}
-						}
+				if(inside && count_only) {
+					count += c.size;
+					continue;
+				}
+				
+				for(int k = 0; k < c.size; k++) {
+					T e = (T) c.items[k];
+					if(!inside) {
+						double dx = e.getX()/CHUNK_SIZE - x;
+						double dy = e.getY()/CHUNK_SIZE - y;
+						double d2 = dx*dx + dy*dy;
+						if(half ? !(d2 < r2 && (dy > 0 || (dy == 0 && dx > 0))) : !(d2 <= r2))
+							continue;
 					}
+					count++;
+					if(visitor != null) visitor.visit(e);
+					if(into != null) into.add(e);
 				}
 			}
 		}
 		
-		return ents;
+		return count;
 	}
 	
 	/**
@@ -259,12 +423,37 @@ public class Grid<T extends Entity> implements Iterable<T> {
 	 * @return entities
 	 */
 	public LinkedList<T> getInBox(double x_1, double x_2, double y_1, double y_2) {
+		LinkedList<T> entities = new LinkedList<T>();
+		scanBox(x_1, x_2, y_1, y_2, null, entities);
+		return entities;
+	}
+	
+	/**
+	 * Adds the Entities within the bounding box (x_1,x_2) x (y_1,y_2) to 'into'
+	 * (which is not cleared first) and returns how many were added.
+	 */
+	public int getInBox(double x_1, double x_2, double y_1, double y_2, Collection<? super T> into) {
+		return scanBox(x_1, x_2, y_1, y_2, null, into);
+	}
+	
+	/**
+	 * Calls visitor.visit() on every Entity within the bounding box (x_1,x_2) x (y_1,y_2).
+	 */
+	public void forEachInBox(double x_1, double x_2, double y_1, double y_2, Visitor<? super T> visitor) {
+		scanBox(x_1, x_2, y_1, y_2, visitor, null);
+	}
+	
+	/**
+	 * The box version of scanDisk.
+	 */
+	@SuppressWarnings("unchecked")
+	private int scanBox(double x_1, double x_2, double y_1, double y_2, Visitor<? super T> visitor, Collection<? super T> into) {
 		
 		x_1 /= CHUNK_SIZE;
 		x_2 /= CHUNK_SIZE;
 		y_1 /= CHUNK_SIZE;
 		y_2 /= CHUNK_SIZE;
-		LinkedList<T> entities = new LinkedList<T>();
+		int count = 0;
 		
 		if(x_1 > x_2) {
 			double holder = x_2;
@@ -277,56 +466,29 @@ public class Grid<T extends Entity> implements Iterable<T> {
 			y_1 = holder;
 		}
 		
-		for(int x = (int)Math.ceil(x_1); x < Math.ceil(x_2) - 1; x++) {
-			for(int y = (int)Math.ceil(y_1); y < Math.ceil(y_2) - 1; y++) {
+		for(int i = (int)Math.floor(x_1); i <= (int)Math.floor(x_2); i++) {
+			for(int j = (int)Math.floor(y_1); j <= (int)Math.floor(y_2); j++) {
+				Chunk c = get(i, j);
+				if(c == null || c.size == 0)
+					continue;
 				
-				coords.set(x,y);
-				Chunk chunk = map.get(coords);
-				if(chunk != null) { // && !chunk.isEmpty()
-					entities.addAll(chunk);
-				}
-			}
-		}
-		
-		HashSet<Chunk> toCheck = new HashSet<Chunk>();
-		int x,y;
-		
-		x = (int)Math.ceil(x_1) - 1;
-		for(y = (int)Math.ceil(y_1)-1; y < Math.ceil(y_2); y++) {
-			coords.set(x,y);
-			toCheck.add(map.get(coords));
-		}
-		
-		x = (int)Math.ceil(x_2) - 1;
-		for(y = (int)Math.ceil(y_1)-1; y < Math.ceil(y_2); y++) {
-			coords.set(x,y);
-			toCheck.add(map.get(coords));
-		}
-		
-		y = (int)Math.ceil(y_1) - 1;
-		for(x = (int)Math.ceil(x_1)-1; x < Math.ceil(x_2); x++) {
-			coords.set(x,y);
-			toCheck.add(map.get(coords));
-		}
-		
-		y = (int)Math.ceil(y_2) - 1;
-		for(x = (int)Math.ceil(x_1)-1; x < Math.ceil(x_2); x++) {
-			coords.set(x,y);
-			toCheck.add(map.get(coords));
-		}
-		
-		toCheck.remove(null);
-		for(Chunk c : toCheck) {
-			for(T e : c) {
-				double ex = e.getX()/CHUNK_SIZE;
-				double ey = e.getY()/CHUNK_SIZE;
-				if(ex < x_2 & ex > x_1 & ey < y_2 & ey > y_1) {
-					entities.add(e);
+				boolean inside = i > x_1 && i + 1 < x_2 && j > y_1 && j + 1 < y_2;
+				for(int k = 0; k < c.size; k++) {
+					T e = (T) c.items[k];
+					if(!inside) {
+						double ex = e.getX()/CHUNK_SIZE;
+						double ey = e.getY()/CHUNK_SIZE;
+						if(!(ex < x_2 & ex > x_1 & ey < y_2 & ey > y_1))
+							continue;
+					}
+					count++;
+					if(visitor != null) visitor.visit(e);
+					if(into != null) into.add(e);
 				}
 			}
 		}
 		
-		return entities;
+		return count;
 	}
 	
 	/**
@@ -334,23 +496,32 @@ public class Grid<T extends Entity> implements Iterable<T> {
 	 * to different chunks if necessary.
 	 */
 	public void updateChunks() {
-		LinkedList<T> toAdd = new LinkedList<T>();
-		
-		for(Chunk c : map.values()) {
-			for(Iterator<T> i = c.iterator(); i.hasNext(); ) {
-				T o = i.next();
-				int o_x = (int)Math.floor(o.getX()/CHUNK_SIZE);
-				int o_y = (int)Math.floor(o.getY()/CHUNK_SIZE);
-				if(!(o_x == c.getGridX() && o_y == c.getGridY())) {
-					toAdd.add(o);
-					i.remove();
-				}
-			}
+		for(int i = 0; i < chunks.size(); i++) {
+			chunks.get(i).removeStrays(moved);
 		}
-		
-		for(T o : toAdd) {
-			this.add(o);
+		addMoved();
+	}
+	
+	/**
+	 * Like updateChunks(), but only looks inside the Chunks that
+	 * Chunk.checkMoved() found an Entity leaving, so the cost depends
+	 * on how many Entities move rather than on how many there are.
+	 * Every Entity that moves must have been checked.
+	 */
+	public void updateMovedChunks() {
+		for(int i = 0; i < chunks.size(); i++) {
+			Chunk c = chunks.get(i);
+			if(c.hasStrays)
+				c.removeStrays(moved);
+		}
+		addMoved();
+	}
+	
+	private void addMoved() {
+		for(int i = 0; i < moved.size(); i++) {
+			place(moved.get(i));
 		}
+		moved.clear();
 	}
 	
 	/**
@@ -358,11 +529,17 @@ public class Grid<T extends Entity> implements Iterable<T> {
 	 * Creates the chunk if none exists.
 	 */
 	private Chunk summonChunk(int x, int y) {
-		coords.set(x,y);
-		Chunk chunk = map.get(coords);
+		long key = CoordsTable.pack(x, y);
+		Chunk chunk = map.get(key);
 		if(chunk == null) {
-			chunk = new Chunk(x,y);
-			map.put(coords, chunk);
+			if(pool.isEmpty()) {
+				chunk = new Chunk(x,y);
+			} else {
+				chunk = pool.remove(pool.size() - 1);
+				chunk.reset(x,y);
+			}
+			map.put(key, chunk);
+			chunks.add(chunk);
 		}
 		return chunk;
 	}
@@ -370,7 +547,7 @@ public class Grid<T extends Entity> implements Iterable<T> {
 	@Override
 	public String toString(){
 		String ret = "";
-		for(Chunk ch : map.values()){
+		for(Chunk ch : chunks){
 			ret += ch + "\n";
 		}
 		return ret;
@@ -389,70 +566,53 @@ public class Grid<T extends Entity> implements Iterable<T> {
 	 */
 	private class GridIterator implements Iterator<T> {
 
-		boolean hasNextChunk;
-		boolean hasNextObject;
-		Chunk currentChunk;
-		Chunk nextChunk;
-		T currentObject;
-		
-		Iterator<Chunk> iChunk;
+		/** index in chunks of the chunk that iObj belongs to */
+		int chunkIndex;
 		Iterator<T> iObj;
 		
 		public GridIterator() {
-			
-			iChunk = map.values().iterator();
-			
-			// Find initial nonempty chunk.
-			while(iChunk.hasNext()) {
-				currentChunk = iChunk.next();
-				if(!currentChunk.isEmpty()) 
-					break;
-			}
-			// Return if the grid contains no objects in any of its chunks.
-			if(currentChunk == null || currentChunk.isEmpty()) {
-				return;
-			}
-			// Scout ahead for the next nonempty chunk.
-			while(iChunk.hasNext()) {
-				nextChunk = iChunk.next();
-				if(!nextChunk.isEmpty()) {
-					break;
+			chunkIndex = -1;
+			advanceChunk();
+		}
+		
+		/**
+		 * Moves iObj to the next nonempty chunk (or sets it to null if there is none).
+		 */
+		private void advanceChunk() {
+			iObj = null;
+			while(++chunkIndex < chunks.size()) {
+				Chunk c = chunks.get(chunkIndex);
+				if(!c.isEmpty()) {
+					iObj = c.iterator();
+					return;
 				}
 			}
-			// Set hasNextChunk.
-			hasNextChunk = !(nextChunk == null || nextChunk.isEmpty());
-			
-			// Initialize iObj
-			iObj = currentChunk.iterator();
 		}
 		
 		public boolean hasNext() {
-			return hasNextChunk || (iObj != null && iObj.hasNext());
+			if(iObj == null)
+				return false;
+			if(iObj.hasNext())
+				return true;
+			// look ahead without losing the ability to remove() the last object returned
+			for(int i = chunkIndex + 1; i < chunks.size(); i++) {
+				if(!chunks.get(i).isEmpty())
+					return true;
+			}
+			return false;
 		}
 		
 		public T next() {
 			// If there is a next object in this chunk, return it.
-			if(iObj.hasNext()) {
+			if(iObj != null && iObj.hasNext()) {
 				return iObj.next();
 			}
-			// Otherwise, set currentChunk = nextChunk and search for a new nextChunk.
+			// Otherwise, move on to the next nonempty chunk.
 			// But first, if we are out of chunks, just return null.
-			if(!hasNextChunk) {
+			advanceChunk();
+			if(iObj == null) {
 				return null;
 			}
-			currentChunk = nextChunk;
-			// Search for next nonempty chunk.
-			while(iChunk.hasNext()) {
-				nextChunk = iChunk.next();
-				if(!nextChunk.isEmpty()) {
-					break;
-				}
-			}
-			// Set hasNextChunk.
-			hasNextChunk = !(nextChunk == null || nextChunk == currentChunk || nextChunk.isEmpty());
-			
-			// Set new iObj iterator.
-			iObj = currentChunk.iterator();
 			return iObj.next();
 		}
 		
@@ -462,21 +622,158 @@ public class Grid<T extends Entity> implements Iterable<T> {
 		
 	}
 	
-	public class Chunk extends HashSet<T> {
+	/**
+	 * The Entities in one square of the Grid, stored in an array
+	 * that only grows. Entities stay in the order they were added.
+	 * 
+	 * Removing Entities is not thread-safe, even between Chunks,
+	 * because the Grid is told when a Chunk empties out.
+	 */
+	public class Chunk extends AbstractCollection<T> {
 		
-		private static final long serialVersionUID = -1953294672491456887L;
+		private static final int INITIAL_CAPACITY = 8;
 
 //		public static final int SIZE = 20; 
 		
 		private int x;
 		private int y;
-		private HashCoords coords;
+		private long key;
+		// (read directly by Grid's queries)
+		private Object[] items;
+		private int size;
+		/** set by checkMoved() when an Entity has left */
+		private boolean hasStrays;
+		private boolean inEmptied, pooled;
 		
 		public Chunk(int x, int y) {
+			items = new Object[INITIAL_CAPACITY];
+			reset(x, y);
+		}
+		
+		/**
+		 * (re)initialize an empty Chunk at new coordinates
+		 */
+		private void reset(int x, int y) {
 			this.x = x;
 			this.y = y;
-			coords = new HashCoords();
-			coords.set(x,y);
+			key = CoordsTable.pack(x, y);
+			size = 0;
+			hasStrays = false;
+			inEmptied = false;
+			pooled = false;
+		}
+		
+		/**
+		 * (Entities are added through Grid.add, which finds the right Chunk)
+		 */
+		private void append(T e) {
+			if(size == items.length) {
+				Object[] bigger = new Object[2 * size];
+				System.arraycopy(items, 0, bigger, 0, size);
+				items = bigger;
+			}
+			items[size++] = e;
+		}
+		
+		/**
+		 * Returns the i'th Entity in this Chunk.
+		 */
+		@SuppressWarnings("unchecked")
+		public T get(int i) {
+			if(i >= size)
+				throw new IndexOutOfBoundsException("Chunk index " + i + " >= " + size);
+			return (T) items[i];
+		}
+		
+		@Override
+		public int size() {
+			return size;
+		}
+		
+		@Override
+		public boolean isEmpty() {
+			return size == 0;
+		}
+		
+		@Override
+		public boolean remove(Object o) {
+			for(int i = 0; i < size; i++) {
+				if(items[i] == o) {
+					removeAt(i);
+					return true;
+				}
+			}
+			return false;
+		}
+		
+		@Override
+		@SuppressWarnings("unchecked")
+		public void clear() {
+			for(int i = 0; i < size; i++) {
+				unregister((T) items[i]);
+				items[i] = null;
+			}
+			size = 0;
+			hasStrays = false;
+			noteIfEmptied();
+		}
+		
+		@SuppressWarnings("unchecked")
+		private void removeAt(int i) {
+			unregister((T) items[i]);
+			System.arraycopy(items, i + 1, items, i, size - i - 1);
+			items[--size] = null;
+			noteIfEmptied();
+		}
+		
+		private void noteIfEmptied() {
+			if(size == 0 && !inEmptied && !pooled) {
+				inEmptied = true;
+				emptied.add(this);
+			}
+		}
+		
+		/**
+		 * Call after an Entity in this Chunk has moved. If it has left the
+		 * Chunk, it will be moved by the next updateMovedChunks(). This only
+		 * touches this Chunk, so different Chunks may be checked from
+		 * different threads at the same time.
+		 */
+		public void checkMoved(T e) {
+			if(!hasStrays) {
+				int e_x = (int)Math.floor(e.getX()/CHUNK_SIZE);
+				int e_y = (int)Math.floor(e.getY()/CHUNK_SIZE);
+				hasStrays = e_x != x || e_y != y;
+			}
+		}
+		
+		/**
+		 * Moves every Entity that is no longer inside this Chunk into 'strays',
+		 * keeping the rest in order.
+		 */
+		@SuppressWarnings("unchecked")
+		private void removeStrays(List<T> strays) {
+			int kept = 0;
+			for(int i = 0; i < size; i++) {
+				T o = (T) items[i];
+				int o_x = (int)Math.floor(o.getX()/CHUNK_SIZE);
+				int o_y = (int)Math.floor(o.getY()/CHUNK_SIZE);
+				if(o_x == x && o_y == y) {
+					items[kept++] = o;
+				} else {
+					strays.add(o);
+				}
+			}
+			for(int i = kept; i < size; i++)
+				items[i] = null;
+			size = kept;
+			hasStrays = false;
+			noteIfEmptied();
+		}
+		
+		@Override
+		public Iterator<T> iterator() {
+			return new ChunkIterator();
 		}
 		
 		public int[] getGridCoords() {
@@ -521,13 +818,38 @@ public class Grid<T extends Entity> implements Iterable<T> {
 		
 		@Override
 		public int hashCode() {
-			return coords.hashCode(); // This is likely bad practice...but suck it?
+			return (int)(key ^ (key >>> 32));
 		}
 		
 		@Override
 		public String toString(){
 			return "Chunk @("+x+","+y+"): "+super.toString();
 		}
+		
+		private class ChunkIterator implements Iterator<T> {
+			
+			int next = 0;
+			boolean canRemove = false;
+			
+			public boolean hasNext() {
+				return next < size;
+			}
+			
+			@SuppressWarnings("unchecked")
+			public T next() {
+				if(next >= size)
+					throw new NoSuchElementException();
+				canRemove = true;
+				return (T) items[next++];
+			}
+			
+			public void remove() {
+				if(!canRemove)
+					throw new IllegalStateException();
+				removeAt(--next);
+				canRemove = false;
+			}
+		}
 
 	}
 	
@@ -0,0 +1,18 @@
+#version 150
+
+uniform sampler2D heat;  // per cell: organism count, average energy
+uniform vec2 heat_origin; // world coordinates of the texture's lower corner
+uniform vec2 heat_size;   // world size covered by the texture
+uniform float saturation; // count at which a cell is about 2/3 opaque
+
+in vec2 world_coordinate;
+out vec4 glFragColor;
+
+void main(){
+	vec2 uv = (world_coordinate - heat_origin) / heat_size;
+	vec2 cell = texture(heat, uv).rg;
+	// same colors as organism circles: norm_energy = 0 --> red, 1 --> green
+	float norm_energy = 1 - exp(-cell.g);
+	float density = 1 - exp(-cell.r / saturation);
+	glFragColor = vec4(1-norm_energy, norm_energy, 0.0, density);
+}
\ No newline at end of file
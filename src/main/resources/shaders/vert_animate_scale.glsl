@@ -2,11 +2,10 @@
 
 uniform mat4  projection;
 
-uniform effectInstance{
-	vec2  translate;
-	float rotate;
-	float effect;
-};
+// per-instance attributes (one organism per instance)
+in vec2  translate;
+in float rotate;
+in float effect;
 
 in vec3  mesh;
 out vec2 world_coordinate;